@@ -0,0 +1,90 @@
+package checkers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the per-position work the search does: generating moves,
+ * playing a move (on a copy of the position, or with make and unmake),
+ * evaluating a position and the start-of-turn check the GUI runs (is the
+ * game over, who has to jump). Each call moves on to the next of a fixed set
+ * of positions so no single position is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    private static final int POSITIONS = 64;
+
+    private GameState[] positions;
+    private int[] firstMoves;
+    private final int[] moves = new int[Rules.MAX_MOVES];
+    private final GameState child = new GameState();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<GameState> list = SearchBenchmark.positions(POSITIONS);
+        positions = list.toArray(new GameState[0]);
+        firstMoves = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            Rules.generateMoves(positions[i], moves, 0);
+            firstMoves[i] = moves[0];
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (POSITIONS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return Rules.generateMoves(positions[nextIndex()], moves, 0);
+    }
+
+    @Benchmark
+    public long playMove() {
+        int i = nextIndex();
+        child.copyFrom(positions[i]);
+        Rules.play(child, firstMoves[i]);
+        return child.key();
+    }
+
+    @Benchmark
+    public long makeAndUnmake() {
+        GameState position = positions[nextIndex()];
+        int undo = Rules.make(position, firstMoves[next]);
+        long key = position.key();
+        Rules.unmake(position, undo);
+        return key;
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return Evaluation.evaluate(positions[nextIndex()]);
+    }
+
+    @Benchmark
+    public int playMoveAndStartTurn() {
+        int i = nextIndex();
+        child.copyFrom(positions[i]);
+        Rules.play(child, firstMoves[i]);
+        // What the GUI asks at the start of every turn
+        return Rules.isGameOver(child) ? 0 : Rules.jumpers(child);
+    }
+}
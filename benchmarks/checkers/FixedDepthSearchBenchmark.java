@@ -0,0 +1,62 @@
+package checkers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for a single-threaded search of a fixed set of positions to a fixed
+ * depth, starting each position with an empty transposition table. The
+ * positions are scored by Evaluation, or by the network built from it,
+ * which gives the same scores and so searches the same nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class FixedDepthSearchBenchmark {
+
+    @Param({"10"})
+    public int depth;
+
+    @Param({"classical", "network"})
+    public String evaluation;
+
+    private List<GameState> positions;
+    private TranspositionTable table;
+    private Search search;
+
+    @Setup
+    public void setUp() {
+        positions = SearchBenchmark.positions(8);
+        table = new TranspositionTable(20,
+                TranspositionTable.Replacement.DEEPER_OR_OLDER);
+        search = new Search(table);
+        if (evaluation.equals("network")) {
+            search.setNetwork(Network.fromEvaluation());
+        }
+    }
+
+    @Benchmark
+    public long search() {
+        long nodes = 0;
+        for (GameState position : positions) {
+            table.clear();
+            search.search(position, depth, 0);
+            nodes += search.nodes();
+        }
+        return nodes;
+    }
+}
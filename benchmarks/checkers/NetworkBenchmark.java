@@ -0,0 +1,87 @@
+package checkers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scoring a position with the network, against Evaluation: working the
+ * accumulator out from scratch, and bringing it up to date from the
+ * position before a move as the search does. Each is run with the scalar
+ * and the vectorized kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NetworkBenchmark {
+
+    private static final int POSITIONS = 64;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    // Each position and the one after its first move
+    private GameState[][] lines;
+    private NeuralEvaluator[] evaluators;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        NetworkKernel chosen = kernel.equals("scalar") ? new NetworkKernel()
+                                                       : NetworkKernel.get();
+        if (!chosen.name().startsWith(kernel)) {
+            throw new IllegalStateException("No " + kernel + " kernel");
+        }
+        Network network = Network.fromEvaluation();
+        List<GameState> positions = SearchBenchmark.positions(POSITIONS);
+        int[] moves = new int[Rules.MAX_MOVES];
+        lines = new GameState[POSITIONS][2];
+        evaluators = new NeuralEvaluator[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            lines[i][0] = positions.get(i);
+            lines[i][1] = new GameState();
+            lines[i][1].copyFrom(lines[i][0]);
+            Rules.generateMoves(lines[i][0], moves, 0);
+            Rules.play(lines[i][1], moves[0]);
+            evaluators[i] = new NeuralEvaluator(network, chosen, 2);
+            evaluators[i].evaluate(lines[i], 0);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (POSITIONS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public int evaluation() {
+        return Evaluation.evaluate(lines[nextIndex()][1]);
+    }
+
+    @Benchmark
+    public int networkFromScratch() {
+        int i = nextIndex();
+        return evaluators[i].evaluate(lines[i][1]);
+    }
+
+    @Benchmark
+    public int networkIncremental() {
+        int i = nextIndex();
+        NeuralEvaluator evaluator = evaluators[i];
+        evaluator.changed(1);
+        return evaluator.evaluate(lines[i], 1);
+    }
+}
@@ -0,0 +1,119 @@
+package checkers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Keeps searching a position on a background thread until told to stop or
+ * given another one, passing the best move and score found so far to the
+ * event dispatch thread after every iteration. The window uses it to show
+ * hints and, with a table shared with the computer player, to think on the
+ * person's time.
+ *
+ * start() and stop() return at once and may be called from any thread. A
+ * listener is never told about a position after it has been replaced.
+ */
+public final class Analysis {
+
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * Told of the analysis of a position, on the event dispatch thread.
+     */
+    public interface Listener {
+        /**
+         * @param move the best packed move found so far
+         * @param score its score, from the point of view of the player to
+         *              move
+         * @param depth the depth searched
+         */
+        void update(int move, int score, int depth);
+    }
+
+    private final Search search;
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(
+            task -> {
+                Thread analysis = new Thread(task, "analysis");
+                analysis.setDaemon(true);
+                analysis.setPriority(Thread.MIN_PRIORITY);
+                return analysis;
+            });
+    // Bumped for every start() and stop(); an analysis runs while it matches
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * @param table the transposition table to fill, which may be shared with
+     *              other searches
+     */
+    public Analysis(TranspositionTable table) {
+        search = new Search(table);
+    }
+
+    /**
+     * @param tablebase endgame results to use, or null for none. Only call
+     *                  this while nothing is being analysed.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        thread.execute(() -> search.setTablebase(tablebase));
+    }
+
+    /**
+     * @param network the network to score positions with, or null for the
+     *                usual evaluation. Only call this while nothing is being
+     *                analysed.
+     */
+    public void setNetwork(Network network) {
+        thread.execute(() -> search.setNetwork(network));
+    }
+
+    /**
+     * Starts analysing a position, stopping any analysis already running.
+     * @param position the position, which is copied
+     * @param listener told of the best move after each iteration, or null to
+     *                 only fill the table
+     */
+    public void start(GameState position, Listener listener) {
+        GameState copy = new GameState();
+        copy.copyFrom(position);
+        int run = generation.incrementAndGet();
+        search.stop();
+        thread.execute(() -> analyse(copy, run, listener));
+    }
+
+    /**
+     * Stops analysing. Results still on their way are thrown away.
+     */
+    public void stop() {
+        generation.incrementAndGet();
+        search.stop();
+    }
+
+    private void analyse(GameState position, int run, Listener listener) {
+        search.reset();
+        if (run != generation.get()) {
+            return; // replaced or stopped before it started
+        }
+        // A stop() from here on ends the search, so it needs no more checks
+        search.setProgress((depth, move, score) ->
+                publish(run, listener, move, score, depth));
+        int move = search.search(position, MAX_DEPTH, 0);
+        if (search.depthReached() == 0 && move != -1) {
+            // Only one move, so there were no iterations
+            publish(run, listener, move, search.bestScore(), 0);
+        }
+    }
+
+    private void publish(int run, Listener listener, int move, int score,
+                         int depth) {
+        if (listener == null) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (run == generation.get()) {
+                listener.update(move, score, depth);
+            }
+        });
+    }
+}
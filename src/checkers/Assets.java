@@ -0,0 +1,182 @@
+package checkers;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * The pictures the window uses. They are read from the classpath (images/ in
+ * the jar, src/images in the source tree) on a background thread, so the
+ * window can be built while they decode and the game runs from wherever the
+ * jar is. Each picture is read once, however often it is asked for.
+ */
+public final class Assets {
+
+    public static final String RED_MAN = "red.jpg";
+    public static final String RED_KING = "redKing.jpg";
+    public static final String BLACK_MAN = "black.jpg";
+    public static final String BLACK_KING = "blackKing.jpg";
+    public static final String BACKGROUND = "Sandstone.jpg";
+    public static final String MENU = "gear.png";
+
+    private static final Executor LOADER = Executors.newSingleThreadExecutor(
+            task -> {
+                Thread thread = new Thread(task, "asset-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Map<String, CompletableFuture<BufferedImage>> IMAGES =
+            new ConcurrentHashMap<>();
+
+    private Assets() {
+    }
+
+    /**
+     * Starts reading every picture the window uses. Called first thing so
+     * they decode while Swing starts up.
+     */
+    public static void preload() {
+        // The biggest first, since it takes longest
+        for (String name : new String[] {BACKGROUND, RED_MAN, RED_KING,
+                BLACK_MAN, BLACK_KING, MENU}) {
+            image(name);
+        }
+    }
+
+    /**
+     * @param name a file in images/
+     * @return the picture once it has been read. It fails with an
+     * UncheckedIOException if there is no such picture or it cannot be read.
+     */
+    public static CompletableFuture<BufferedImage> image(String name) {
+        return IMAGES.computeIfAbsent(name, key ->
+                CompletableFuture.supplyAsync(() -> read(key), LOADER));
+    }
+
+    /**
+     * Hands pictures to the event dispatch thread once they have all been
+     * read. A missing picture is reported and the window goes without it.
+     * @param use given the pictures in the order they were named
+     */
+    public static void whenLoaded(Consumer<BufferedImage[]> use,
+                                  String... names) {
+        // allOf() takes an array, and there are no arrays of generic types
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<BufferedImage>[] loading =
+                new CompletableFuture[names.length];
+        for (int i = 0; i < names.length; i++) {
+            loading[i] = image(names[i]);
+        }
+        CompletableFuture.allOf(loading).whenComplete((done, error) -> {
+            if (error != null) {
+                System.err.println("Cannot load images: "
+                        + error.getCause().getMessage());
+                return;
+            }
+            BufferedImage[] images = new BufferedImage[names.length];
+            for (int i = 0; i < names.length; i++) {
+                images[i] = loading[i].join();
+            }
+            SwingUtilities.invokeLater(() -> use.accept(images));
+        });
+    }
+
+    /**
+     * Reads a picture and scales it to the size it will first be drawn at,
+     * both off the event dispatch thread, then hands it over to that thread.
+     */
+    public static void whenScaled(String name, int width, int height,
+                                  Consumer<Scaled> use) {
+        image(name).thenApplyAsync(image -> new Scaled(image, width, height),
+                LOADER).whenComplete((scaled, error) -> {
+            if (error != null) {
+                System.err.println("Cannot load image " + name + ": "
+                        + error.getCause().getMessage());
+            } else {
+                SwingUtilities.invokeLater(() -> use.accept(scaled));
+            }
+        });
+    }
+
+    /**
+     * Decodes a picture into the format quickest to draw
+     */
+    private static BufferedImage read(String name) {
+        URL url = Assets.class.getResource("/images/" + name);
+        try {
+            if (url == null) {
+                throw new FileNotFoundException("images/" + name
+                        + " is not on the classpath");
+            }
+            BufferedImage decoded = ImageIO.read(url);
+            if (decoded == null) {
+                throw new IOException("images/" + name + " is not a picture");
+            }
+            return convert(decoded, decoded.getWidth(), decoded.getHeight());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Draws an image into a new one of the given size, in a packed int
+     * format, with alpha only if the original has it
+     */
+    static BufferedImage convert(Image image, int width, int height) {
+        boolean alpha = !(image instanceof BufferedImage)
+                || ((BufferedImage) image).getColorModel().hasAlpha();
+        BufferedImage converted = new BufferedImage(width, height, alpha ?
+                BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return converted;
+    }
+
+    /**
+     * A picture kept scaled to the size it was last drawn at, so it is only
+     * scaled again when that size changes. Only for the event dispatch
+     * thread once it has been handed over.
+     */
+    public static final class Scaled {
+
+        private final BufferedImage original;
+        private BufferedImage scaled;
+
+        /**
+         * @param width the width to scale it to straight away
+         * @param height the height to scale it to straight away
+         */
+        public Scaled(BufferedImage original, int width, int height) {
+            this.original = original;
+            at(width, height);
+        }
+
+        /**
+         * @return the picture at the given size
+         */
+        public BufferedImage at(int width, int height) {
+            if (scaled == null || scaled.getWidth() != width
+                    || scaled.getHeight() != height) {
+                scaled = convert(original, Math.max(1, width),
+                        Math.max(1, height));
+            }
+            return scaled;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package checkers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches a list of positions without a window, such as puzzles or the
+ * critical moments of games, and prints the best move and score of each.
+ *
+ * Usage: java checkers.BatchAnalysis [options] [file]
+ *
+ * Positions are read from the file, or standard input if there is none or
+ * it is "-", one FEN a line, in either the bare or the [FEN "..."] form.
+ * A line may end with depth=N or time=MS to search that position to a
+ * different limit. Blank lines and lines starting with # are skipped.
+ *
+ * Options:
+ *
+ *   --depth N          search each position N plies (default 64)
+ *   --time MS          search each position MS milliseconds (default 1000,
+ *                      0 for no limit)
+ *   --threads N        positions searched at once (default: number of
+ *                      processors)
+ *   --search-threads N threads searching each position, sharing its
+ *                      table (default 1)
+ *   --table BITS       transposition table of 2^BITS entries for each
+ *                      thread (default 20)
+ *   --tablebase FILE   score endgames from a tablebase
+ *
+ * Each position being searched has its own transposition table, kept from
+ * one position to the next, which helps when they come from the same game.
+ * --threads suits a long list, --search-threads a few positions searched
+ * deeply; the two multiply.
+ *
+ * A line is printed for each position with its FEN, best move, score (from
+ * the point of view of the player to move, in hundredths of a man), depth,
+ * nodes and milliseconds, separated by tabs. A position without a move
+ * shows "none", and one that cannot be read shows "error:" and why.
+ *
+ * Results are printed in the order the positions were read, each as soon
+ * as it and every one before it are done. Only a few positions for each
+ * thread are read ahead of the last one printed, so memory stays the same
+ * however long the list, and a slow position holds up the printing but
+ * not the searching of the ones after it until that window is full.
+ */
+public final class BatchAnalysis {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java checkers.BatchAnalysis [options] [file]",
+            "Options: --depth N, --time MS, --threads N, --search-threads N,",
+            "  --table BITS, --tablebase FILE");
+
+    // Positions read ahead of the last one printed, for each thread
+    private static final int AHEAD_PER_THREAD = 4;
+
+    private final int depth;
+    private final long time;
+    private final ExecutorService pool;
+    private final ThreadLocal<ParallelSearch> searches;
+    private final PrintStream out;
+
+    // Results waiting for the ones before them; position n is at n % length
+    private final String[] done;
+    private final Semaphore window;
+    private long nextToRead;
+    private long nextToPrint;
+
+    BatchAnalysis(int depth, long time, int threads,
+                  int searchThreads, int tableBits,
+                  Tablebase tablebase, PrintStream out) {
+        this.depth = depth;
+        this.time = time;
+        this.out = out;
+        done = new String[threads * AHEAD_PER_THREAD];
+        window = new Semaphore(done.length);
+        pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "analysis-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        searches = ThreadLocal.withInitial(() -> {
+            ParallelSearch search = new ParallelSearch(searchThreads,
+                    new TranspositionTable(tableBits,
+                            TranspositionTable.Replacement.DEEPER_OR_OLDER));
+            search.setTablebase(tablebase);
+            return search;
+        });
+    }
+
+    /**
+     * Reads positions until the input ends, handing each to a thread once
+     * there is room in the window, then waits for the last to be printed.
+     */
+    void run(BufferedReader in) throws IOException,
+            InterruptedException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String text = line.trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            window.acquire();
+            long number = nextToRead++;
+            pool.execute(() -> {
+                String result;
+                try {
+                    result = analyse(text);
+                } catch (RuntimeException e) {
+                    // Still printed, or every later result would wait for it
+                    result = text + "\terror: " + e;
+                }
+                finished(number, result);
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        out.flush();
+    }
+
+    /**
+     * @return the line to print for a line of input
+     */
+    private String analyse(String text) {
+        int positionDepth = depth;
+        long positionTime = time;
+        // Limits at the end of the line, after the FEN
+        String fen = text;
+        String[] tokens = text.split("\\s+");
+        int end = tokens.length;
+        try {
+            while (end > 1 && tokens[end - 1].contains("=")) {
+                String token = tokens[end - 1];
+                String value = token.substring(token.indexOf('=') + 1);
+                if (token.startsWith("depth=")) {
+                    positionDepth = Integer.parseInt(value);
+                } else if (token.startsWith("time=")) {
+                    positionTime = Long.parseLong(value);
+                } else {
+                    break;
+                }
+                end--;
+            }
+            if (end < tokens.length) {
+                fen = String.join(" ", Arrays.copyOf(tokens, end));
+            }
+            GameState position = Fen.parse(fen);
+            ParallelSearch search = searches.get();
+            long started = System.nanoTime();
+            int move = search.search(position, positionDepth, positionTime);
+            long millis = (System.nanoTime() - started) / 1000000;
+            return String.join("\t", fen,
+                    (move == -1) ? "none" : Fen.moveText(move),
+                    Integer.toString(search.bestScore()),
+                    Integer.toString(search.depthReached()),
+                    Long.toString(search.nodes()), Long.toString(millis));
+        } catch (IllegalArgumentException e) {
+            return fen + "\terror: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Keeps a result until every position before it is done, then prints
+     * it and any after it that were waiting for it.
+     */
+    private synchronized void finished(long number, String result) {
+        done[(int) (number % done.length)] = result;
+        int printed = 0;
+        int slot;
+        while (done[slot = (int) (nextToPrint % done.length)] != null) {
+            out.println(done[slot]);
+            done[slot] = null;
+            nextToPrint++;
+            printed++;
+        }
+        if (printed > 0) {
+            out.flush();
+            window.release(printed);
+        }
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        int depth = 64;
+        long time = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int searchThreads = 1;
+        int tableBits = 20;
+        Tablebase tablebase = null;
+        String file = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--depth":
+                        depth = Integer.parseInt(args[++i]);
+                        break;
+                    case "--time":
+                        time = Long.parseLong(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--search-threads":
+                        searchThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--table":
+                        tableBits = Integer.parseInt(args[++i]);
+                        break;
+                    case "--tablebase":
+                        tablebase = Tablebase.open(Paths.get(args[++i]));
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || file != null) {
+                            throw new IllegalArgumentException(
+                                    "Unexpected argument " + args[i]);
+                        }
+                        file = args[i];
+                }
+            }
+            if (threads < 1 || searchThreads < 1) {
+                throw new IllegalArgumentException(
+                        "--threads and --search-threads must be 1 or more");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ?
+                    "Missing value for " + args[args.length - 1] :
+                    e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Metrics.registerMBean();
+        PrintStream out = new PrintStream(System.out, false,
+                StandardCharsets.UTF_8);
+        BatchAnalysis batch = new BatchAnalysis(depth, time, threads,
+                searchThreads, tableBits, tablebase, out);
+        try (BufferedReader in = (file == null || file.equals("-")) ?
+                new BufferedReader(new InputStreamReader(System.in,
+                        StandardCharsets.ISO_8859_1)) :
+                Files.newBufferedReader(Paths.get(file),
+                        StandardCharsets.ISO_8859_1)) {
+            batch.run(in);
+        }
+        if (Metrics.ENABLED) {
+            System.err.println(Metrics.snapshot());
+        }
+    }
+}
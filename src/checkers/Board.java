@@ -0,0 +1,437 @@
+package checkers;
+
+/**
+ * Bitboard representation of a checkers position. Each of the 32 playable
+ * squares is given one bit of an int, numbered left to right and top to bottom
+ * as the board is drawn, so Red's home row is bits 0-3 and Black's home row is
+ * bits 28-31. The position is three masks: red pieces, black pieces and kings
+ * (of either color).
+ *
+ * The GUI addresses spaces by key (10 * column + row, both counted from 1).
+ * squareOf() and keyOf() translate between the two numbering schemes.
+ */
+public final class Board {
+
+    // Directions, in the same order checkMoves() has always used them
+    public static final int DOWN_LEFT = 0;
+    public static final int DOWN_RIGHT = 1;
+    public static final int UP_LEFT = 2;
+    public static final int UP_RIGHT = 3;
+
+    public static final char EMPTY = ' ';
+
+    // Row and edge masks used to keep shifts from wrapping around the board
+    private static final int EVEN_ROWS = 0x0F0F0F0F; // rows 1, 3, 5 and 7
+    private static final int ODD_ROWS = 0xF0F0F0F0;  // rows 2, 4, 6 and 8
+    private static final int LEFT_EDGE = 0x10101010;
+    private static final int RIGHT_EDGE = 0x08080808;
+    private static final int RED_KING_ROW = 0xF0000000;
+    private static final int BLACK_KING_ROW = 0x0000000F;
+
+    // Translation tables between GUI keys and square numbers
+    private static final int[] KEY_TO_SQUARE = new int[100];
+    private static final int[] SQUARE_TO_KEY = new int[32];
+
+    /* Neighbor tables indexed by 4 * square + direction. Each entry is a
+       one-bit mask of the square one step (STEPS) or two steps (JUMPS) away,
+       or 0 when that square is off the board, so lookups never need a bounds
+       check
+    */
+    private static final int[] STEPS = new int[128];
+    private static final int[] JUMPS = new int[128];
+
+    // Square of the piece jumped, indexed by 32 * from + to
+    private static final int[] JUMPED = new int[1024];
+
+    static {
+        java.util.Arrays.fill(KEY_TO_SQUARE, -1);
+        for (int square = 0; square < 32; square++) {
+            int row = square / 4;
+            int column = 2 * (square % 4) + ((row % 2 == 0) ? 1 : 0);
+            int key = 10 * (column + 1) + (row + 1);
+            SQUARE_TO_KEY[square] = key;
+            KEY_TO_SQUARE[key] = square;
+        }
+        for (int square = 0; square < 32; square++) {
+            for (int direction = DOWN_LEFT; direction <= UP_RIGHT; direction++) {
+                int step = shift(1 << square, direction);
+                STEPS[4 * square + direction] = step;
+                int landing = shift(step, direction);
+                JUMPS[4 * square + direction] = landing;
+                if (landing != 0) {
+                    JUMPED[32 * square + Integer.numberOfTrailingZeros(landing)]
+                            = Integer.numberOfTrailingZeros(step);
+                }
+            }
+        }
+    }
+
+    private int red, black, kings;
+
+    /* Pieces of each color that can jump (jumpers) or step onto an empty
+       square (movers). They are worked out for the whole board at once with
+       shifts the first time they are asked for after the position changes,
+       then reused until the next change
+    */
+    private int redJumpers, blackJumpers, redMovers, blackMovers;
+    private boolean stale = true;
+
+    // Zobrist key of the pieces, kept up to date by every change
+    private long hash;
+
+    /**
+     * @param key a GUI key
+     * @return the square number for key, or -1 if key is not a playable space
+     */
+    public static int squareOf(int key) {
+        if (key < 0 || key >= KEY_TO_SQUARE.length) {
+            return -1;
+        }
+        return KEY_TO_SQUARE[key];
+    }
+
+    /**
+     * @param square a square number from 0 to 31
+     * @return the GUI key for that square
+     */
+    public static int keyOf(int square) {
+        return SQUARE_TO_KEY[square];
+    }
+
+    /**
+     * Shifts every bit in bits one step in the given direction. Bits that
+     * would leave the board are dropped.
+     * @param bits set of squares
+     * @param direction one of DOWN_LEFT, DOWN_RIGHT, UP_LEFT or UP_RIGHT
+     * @return the set of squares one step away
+     */
+    public static int shift(int bits, int direction) {
+        switch (direction) {
+            case DOWN_LEFT:
+                return ((bits & EVEN_ROWS) << 4)
+                        | ((bits & ODD_ROWS & ~LEFT_EDGE) << 3);
+            case DOWN_RIGHT:
+                return ((bits & EVEN_ROWS & ~RIGHT_EDGE) << 5)
+                        | ((bits & ODD_ROWS) << 4);
+            case UP_LEFT:
+                return ((bits & EVEN_ROWS) >>> 4)
+                        | ((bits & ODD_ROWS & ~LEFT_EDGE) >>> 5);
+            default:
+                return ((bits & EVEN_ROWS & ~RIGHT_EDGE) >>> 3)
+                        | ((bits & ODD_ROWS) >>> 4);
+        }
+    }
+
+    /**
+     * @return one-bit mask of the square next to square in direction, or 0 if
+     * that would be off the board
+     */
+    public static int step(int square, int direction) {
+        return STEPS[4 * square + direction];
+    }
+
+    /**
+     * @return one-bit mask of the square two steps from square in direction
+     * (where a jump in that direction lands), or 0 if that is off the board
+     */
+    public static int jump(int square, int direction) {
+        return JUMPS[4 * square + direction];
+    }
+
+    /**
+     * @param from the square a jump starts on
+     * @param to the square the jump lands on
+     * @return the square of the piece being jumped
+     */
+    public static int jumpedSquare(int from, int to) {
+        return JUMPED[32 * from + to];
+    }
+
+    /**
+     * @param from the square a move starts on
+     * @param to the square the move ends on
+     * @return true if the move is a jump rather than a single step
+     */
+    public static boolean isJump(int from, int to) {
+        int rows = (to >> 2) - (from >> 2);
+        return rows == 2 || rows == -2;
+    }
+
+    /**
+     * @param color 'r' or 'b'
+     * @return the first direction a man of this color may move in. Men move
+     * in that direction and the next one, kings in all four.
+     */
+    public static int firstDirection(char color) {
+        return (color == 'r') ? DOWN_LEFT : UP_LEFT;
+    }
+
+    /**
+     * @param square the square a piece has landed on
+     * @param color the color of that piece
+     * @return true if a man of this color is promoted on that square
+     */
+    public static boolean isKingRow(int square, char color) {
+        int kingRow = (color == 'r') ? RED_KING_ROW : BLACK_KING_ROW;
+        return ((1 << square) & kingRow) != 0;
+    }
+
+    /**
+     * @param color 'r' or 'b'
+     * @return the mask of all pieces of that color
+     */
+    public int pieces(char color) {
+        return (color == 'r') ? red : black;
+    }
+
+    /**
+     * @return the mask of all kings of both colors
+     */
+    public int kings() {
+        return kings;
+    }
+
+    /**
+     * @return the mask of all unoccupied squares
+     */
+    public int empty() {
+        return ~(red | black);
+    }
+
+    public boolean isOccupied(int square) {
+        return (((red | black) >>> square) & 1) != 0;
+    }
+
+    public boolean isKing(int square) {
+        return ((kings >>> square) & 1) != 0;
+    }
+
+    /**
+     * @param square a square number
+     * @return 'r', 'b' or EMPTY
+     */
+    public char colorAt(int square) {
+        int bit = 1 << square;
+        if ((red & bit) != 0) {
+            return 'r';
+        }
+        if ((black & bit) != 0) {
+            return 'b';
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Puts a piece on an empty square.
+     */
+    public void place(int square, char color, boolean king) {
+        stale = true;
+        int bit = 1 << square;
+        if (color == 'r') {
+            red |= bit;
+        } else {
+            black |= bit;
+        }
+        if (king) {
+            kings |= bit;
+        }
+        hash ^= Zobrist.piece(typeAt(square), square);
+    }
+
+    /**
+     * Takes whatever piece is on square off the board.
+     */
+    public void remove(int square) {
+        stale = true;
+        if (isOccupied(square)) {
+            hash ^= Zobrist.piece(typeAt(square), square);
+        }
+        int mask = ~(1 << square);
+        red &= mask;
+        black &= mask;
+        kings &= mask;
+    }
+
+    /**
+     * Moves the piece on from to the empty square to, keeping its color and
+     * king status.
+     */
+    public void move(int from, int to) {
+        stale = true;
+        int type = typeAt(from);
+        hash ^= Zobrist.piece(type, from) ^ Zobrist.piece(type, to);
+        int fromTo = (1 << from) | (1 << to);
+        if ((red & (1 << from)) != 0) {
+            red ^= fromTo;
+        } else {
+            black ^= fromTo;
+        }
+        if ((kings & (1 << from)) != 0) {
+            kings ^= fromTo;
+        }
+    }
+
+    public void promote(int square) {
+        if (!isKing(square)) {
+            stale = true;
+            hash ^= Zobrist.piece(typeAt(square), square);
+            kings |= 1 << square;
+            hash ^= Zobrist.piece(typeAt(square), square);
+        }
+    }
+
+    public void demote(int square) {
+        if (isKing(square)) {
+            stale = true;
+            hash ^= Zobrist.piece(typeAt(square), square);
+            kings &= ~(1 << square);
+            hash ^= Zobrist.piece(typeAt(square), square);
+        }
+    }
+
+    /**
+     * @return the Zobrist key of the pieces on the board. GameState.key()
+     * adds whose turn it is.
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * @return the Zobrist piece type of the piece on an occupied square
+     */
+    private int typeAt(int square) {
+        int type = ((red >>> square) & 1) != 0 ? Zobrist.RED_MAN : 
+                                                 Zobrist.BLACK_MAN;
+        return type + ((kings >>> square) & 1);
+    }
+
+    /**
+     * Makes this board a copy of another one.
+     * @param other the board to copy
+     */
+    public void copyFrom(Board other) {
+        red = other.red;
+        black = other.black;
+        kings = other.kings;
+        redJumpers = other.redJumpers;
+        blackJumpers = other.blackJumpers;
+        redMovers = other.redMovers;
+        blackMovers = other.blackMovers;
+        stale = other.stale;
+        hash = other.hash;
+    }
+
+    /**
+     * Sets up the board from its three masks, as returned by pieces() and
+     * kings(), for code that keeps positions in that compact form.
+     * @param red the red pieces
+     * @param black the black pieces, none on a red square
+     * @param kings the kings of either color, all on occupied squares
+     */
+    public void set(int red, int black, int kings) {
+        this.red = red;
+        this.black = black;
+        this.kings = kings;
+        stale = true;
+        hash = 0;
+        int pieces = red | black;
+        while (pieces != 0) {
+            int square = Integer.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            hash ^= Zobrist.piece(typeAt(square), square);
+        }
+    }
+
+    /**
+     * Removes every piece from the board.
+     */
+    public void clear() {
+        stale = true;
+        red = 0;
+        black = 0;
+        kings = 0;
+        hash = 0;
+    }
+
+    /**
+     * @param color 'r' or 'b'
+     * @return the mask of pieces of that color that can jump an opponent
+     */
+    public int jumpers(char color) {
+        if (stale) {
+            updateMobility();
+        }
+        return (color == 'r') ? redJumpers : blackJumpers;
+    }
+
+    /**
+     * @param color 'r' or 'b'
+     * @return the mask of pieces of that color that can step to an empty
+     * square
+     */
+    public int movers(char color) {
+        if (stale) {
+            updateMobility();
+        }
+        return (color == 'r') ? redMovers : blackMovers;
+    }
+
+    /**
+     * Works out the jumpers and movers of both colors. For each direction,
+     * shifting the empty squares back one step finds the squares with an
+     * empty square in front of them; shifting the opponents among those back
+     * once more finds the pieces that can jump in that direction.
+     */
+    private void updateMobility() {
+        int empty = empty();
+        redJumpers = 0;
+        blackJumpers = 0;
+        redMovers = 0;
+        blackMovers = 0;
+        for (int direction = DOWN_LEFT; direction <= UP_RIGHT; direction++) {
+            int back = UP_RIGHT - direction; // the opposite direction
+            int openAhead = shift(empty, back);
+            // Red men move down the board, Black men up, kings both ways
+            int redPieces = (direction < UP_LEFT) ? red : red & kings;
+            int blackPieces = (direction < UP_LEFT) ? black & kings : black;
+            redMovers |= redPieces & openAhead;
+            blackMovers |= blackPieces & openAhead;
+            redJumpers |= redPieces & shift(openAhead & black, back);
+            blackJumpers |= blackPieces & shift(openAhead & red, back);
+        }
+        stale = false;
+    }
+
+    /**
+     * @param square an occupied square
+     * @return the set of empty squares the piece can step to
+     */
+    public int moves(int square) {
+        int targets = 0;
+        int first = isKing(square) ? DOWN_LEFT : firstDirection(colorAt(square));
+        int last = isKing(square) ? UP_RIGHT : first + 1;
+        for (int direction = first; direction <= last; direction++) {
+            targets |= STEPS[4 * square + direction];
+        }
+        return targets & empty();
+    }
+
+    /**
+     * @param square an occupied square
+     * @return the set of squares the piece can land on by jumping an opponent
+     */
+    public int jumps(int square) {
+        int opponents = (colorAt(square) == 'r') ? black : red;
+        int targets = 0;
+        int first = isKing(square) ? DOWN_LEFT : firstDirection(colorAt(square));
+        int last = isKing(square) ? UP_RIGHT : first + 1;
+        for (int direction = first; direction <= last; direction++) {
+            int index = 4 * square + direction;
+            if ((STEPS[index] & opponents) != 0) {
+                targets |= JUMPS[index];
+            }
+        }
+        return targets & empty();
+    }
+}
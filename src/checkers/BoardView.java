@@ -0,0 +1,291 @@
+package checkers;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+
+/**
+ * Draws the board and its pieces straight from a GameState and turns clicks
+ * into the same action commands the board's buttons used to send: the GUI
+ * key (see Board) of the space clicked.
+ *
+ * Nothing is drawn between changes. update() compares the board with what
+ * was last drawn and repaints only the spaces that changed, and highlights
+ * and hints repaint only the spaces they come on or off. Each piece image is
+ * scaled once for the current size of a space and kept until the size
+ * changes.
+ */
+@SuppressWarnings("serial") // Swing components are never serialized here
+public final class BoardView extends JComponent {
+
+    private static final int DEFAULT_SPACE_SIZE = 70;
+    private static final Color LIGHT_SPACE = new Color(200, 0, 0);
+    private static final Color DARK_SPACE = Color.BLACK;
+    private static final Color SELECTED = Color.YELLOW;
+    private static final Color TARGET = Color.GREEN;
+    private static final Color HINT = new Color(0, 200, 255);
+
+    // Piece images, indexed by Zobrist piece type
+    private final Image[] pieces = new Image[4];
+    private final BufferedImage[] scaled = new BufferedImage[4];
+    private int scaledSize = -1;
+
+    private final GameState game;
+
+    // The position as of the last update()
+    private int drawnRed;
+    private int drawnBlack;
+    private int drawnKings;
+
+    // The highlighted square and the mask of squares it may move to
+    private int selected = -1;
+    private int targets;
+    private int hint = -1; // the packed move suggested, or -1
+
+    private ActionListener listener;
+
+    /**
+     * @param game the game to draw. Call update() whenever it changes.
+     */
+    public BoardView(GameState game) {
+        this.game = game;
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int key = keyAt(e.getX(), e.getY());
+                if (key != -1 && listener != null && isEnabled()) {
+                    listener.actionPerformed(new ActionEvent(BoardView.this,
+                            ActionEvent.ACTION_PERFORMED, "" + key));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the pictures of the pieces, which are scaled to fit the spaces
+     */
+    public void setPieceImages(Image redMan, Image redKing, Image blackMan,
+                               Image blackKing) {
+        pieces[Zobrist.RED_MAN] = redMan;
+        pieces[Zobrist.RED_MAN + 1] = redKing;
+        pieces[Zobrist.BLACK_MAN] = blackMan;
+        pieces[Zobrist.BLACK_MAN + 1] = blackKing;
+        scaledSize = -1;
+        repaint();
+    }
+
+    /**
+     * @param listener told of each click on a space, with the space's key as
+     *                 the action command
+     */
+    public void setActionListener(ActionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Repaints the spaces whose pieces have changed since the last call.
+     */
+    public void update() {
+        Board board = game.board();
+        int changed = (board.pieces('r') ^ drawnRed)
+                | (board.pieces('b') ^ drawnBlack)
+                | (board.kings() ^ drawnKings);
+        drawnRed = board.pieces('r');
+        drawnBlack = board.pieces('b');
+        drawnKings = board.kings();
+        repaintSquares(changed);
+    }
+
+    /**
+     * Highlights a piece and the squares it may move to, replacing any
+     * highlights shown before.
+     * @param square the piece's square, or -1 for none
+     * @param targets the mask of squares to highlight as moves
+     */
+    public void setHighlights(int square, int targets) {
+        int changed = this.targets ^ targets;
+        if (square != selected) {
+            changed |= bit(selected) | bit(square);
+        }
+        selected = square;
+        this.targets = targets;
+        repaintSquares(changed);
+    }
+
+    /**
+     * Marks the squares a suggested move goes from and to, under any other
+     * highlights.
+     * @param move the packed move, or -1 to remove the hint
+     */
+    public void setHint(int move) {
+        if (move == hint) {
+            return;
+        }
+        int changed = hintSquares(hint) | hintSquares(move);
+        hint = move;
+        repaintSquares(changed);
+    }
+
+    /**
+     * Removes all highlights
+     */
+    public void clearHighlights() {
+        setHighlights(-1, 0);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        return new Dimension(8 * DEFAULT_SPACE_SIZE + insets.left + insets.right,
+                8 * DEFAULT_SPACE_SIZE + insets.top + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Board board = game.board();
+        int size = spaceSize();
+        Insets insets = getInsets();
+        scalePieces(size);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        if (!new Rectangle(insets.left, insets.top, 8 * size, 8 * size)
+                .contains(clip)) {
+            // Any space left over around the squares
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        }
+
+        // Only the spaces inside the area being repainted are drawn
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                int x = insets.left + column * size;
+                int y = insets.top + row * size;
+                if (!clip.intersects(x, y, size, size)) {
+                    continue;
+                }
+                int square = Board.squareOf(10 * (column + 1) + (row + 1));
+                if (square == -1) {
+                    g.setColor(LIGHT_SPACE);
+                    g.fillRect(x, y, size, size);
+                    continue;
+                }
+                g.setColor(DARK_SPACE);
+                g.fillRect(x, y, size, size);
+                char color = board.colorAt(square);
+                if (color != Board.EMPTY) {
+                    int type = (color == 'r' ? Zobrist.RED_MAN : Zobrist.BLACK_MAN)
+                            + (board.isKing(square) ? 1 : 0);
+                    BufferedImage piece = scaled[type];
+                    if (piece != null) {
+                        g.drawImage(piece, x + (size - piece.getWidth()) / 2,
+                                y + (size - piece.getHeight()) / 2, null);
+                    }
+                }
+                // Highlight widths follow the size of a space
+                if (square == selected) {
+                    outline(g2, x, y, size, Math.max(1, size / 23), SELECTED);
+                } else if ((targets & bit(square)) != 0) {
+                    outline(g2, x, y, size, Math.max(1, size / 14), TARGET);
+                } else if ((hintSquares(hint) & bit(square)) != 0) {
+                    outline(g2, x, y, size, Math.max(1, size / 23), HINT);
+                }
+            }
+        }
+    }
+
+    private static void outline(Graphics2D g, int x, int y, int size,
+                                int width, Color color) {
+        g.setColor(color);
+        g.setStroke(new BasicStroke(width));
+        g.drawRect(x + width / 2, y + width / 2, size - width, size - width);
+    }
+
+    /**
+     * Scales the piece images for spaces of the given size, unless they
+     * already are. Pieces keep their shape and the margin they had on a
+     * space of the default size.
+     */
+    private void scalePieces(int size) {
+        if (size == scaledSize) {
+            return;
+        }
+        scaledSize = size;
+        for (int type = 0; type < pieces.length; type++) {
+            Image piece = pieces[type];
+            int width = (piece == null) ? -1 : piece.getWidth(null);
+            int height = (piece == null) ? -1 : piece.getHeight(null);
+            if (width <= 0 || height <= 0 || size <= 0) {
+                scaled[type] = null; // not loaded yet
+                continue;
+            }
+            int scaledWidth = Math.max(1, width * size / DEFAULT_SPACE_SIZE);
+            int scaledHeight = Math.max(1, height * size / DEFAULT_SPACE_SIZE);
+            scaled[type] = Assets.convert(piece, scaledWidth, scaledHeight);
+        }
+    }
+
+    /**
+     * @return the size of one space in pixels at the current size
+     */
+    private int spaceSize() {
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+        return Math.max(0, Math.min(width, height) / 8);
+    }
+
+    /**
+     * @return the key of the space at a point, or -1 if it is off the board
+     */
+    private int keyAt(int x, int y) {
+        int size = spaceSize();
+        if (size == 0) {
+            return -1;
+        }
+        Insets insets = getInsets();
+        int column = Math.floorDiv(x - insets.left, size);
+        int row = Math.floorDiv(y - insets.top, size);
+        if (column < 0 || column > 7 || row < 0 || row > 7) {
+            return -1;
+        }
+        return 10 * (column + 1) + (row + 1);
+    }
+
+    private void repaintSquares(int squares) {
+        int size = spaceSize();
+        Insets insets = getInsets();
+        while (squares != 0) {
+            int square = Integer.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            int key = Board.keyOf(square);
+            repaint(insets.left + (key / 10 - 1) * size,
+                    insets.top + (key % 10 - 1) * size, size, size);
+        }
+    }
+
+    private static int hintSquares(int move) {
+        return (move == -1) ? 0 : bit(Rules.from(move)) | bit(Rules.to(move));
+    }
+
+    private static int bit(int square) {
+        return (square < 0) ? 0 : 1 << square;
+    }
+}
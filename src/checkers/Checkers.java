@@ -5,6 +5,14 @@ import java.util.*;
 import javax.swing.*;
 import java.awt.event.*;
 import javax.swing.border.Border;
+import java.util.concurrent.ExecutionException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 
 /**
  * This is the main class for the game of Checkers. This class draws the GUI,
@@ -16,8 +24,14 @@ public class Checkers implements ActionListener {
 
     // GUI class variables    
     private JFrame frame;
-    private JPanel primaryPanel, board, top;
+    private JPanel primaryPanel, top;
+    private BoardView board;
     private JLabel playerTurn;
+    private JLabel hintLabel;
+    private JLabel noticeLabel;
+    private final javax.swing.Timer noticeTimer = new javax.swing.Timer(
+            NOTICE_MILLIS, e -> noticeLabel.setVisible(false));
+    private JDialog gameOverDialog;
     private JButton undoButton;
     private final Color redColor = new Color(200, 0, 0);
     private final Border redTurnBorder = BorderFactory.createCompoundBorder(
@@ -26,57 +40,73 @@ public class Checkers implements ActionListener {
     private final Border blackTurnBorder = BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(Color.BLACK, 8), 
             BorderFactory.createLineBorder(Color.WHITE, 1));
-    private Dimension sizeOfSpace;
-        
-    // Image class variables
-    private static final ImageIcon RED_CHECKER = 
-                new ImageIcon("src/images/red.jpg");
-    private static final ImageIcon BLACK_CHECKER = 
-                new ImageIcon("src/images/black.jpg");
-    private static final ImageIcon RED_KING = 
-                new ImageIcon("src/images/redKing.jpg");
-    private static final ImageIcon BLACK_KING = 
-                new ImageIcon("src/images/blackKing.jpg");
-    private static final Image BACKGROUND = 
-                Toolkit.getDefaultToolkit().
-                        getImage("src/images/Sandstone.jpg");
+        
+    // Image variables. The pictures arrive from Assets after the window is
+    // built; until then the background is a plain sandstone color
+    private static final Color SANDSTONE = new Color(0xDD, 0xB6, 0x7B);
+    private static final Dimension MENU_ICON_SIZE = new Dimension(67, 67);
+    private static final int NOTICE_MILLIS = 4000; // how long notices show
+    private Assets.Scaled background;
     
-    // Constants for use with the highlightSpace() method
-    private static final boolean YELLOW = false;
-    private static final boolean GREEN = true;
+    // Startup timing, printed when the checkers.startupTime property is true
+    private static final long MAIN_STARTED = System.nanoTime();
+    private static boolean framePainted = false;
     
-    // Turn and input variables
+    // Input variables
     private boolean selectionMade = false;
     private int spaceSelected = -1; //-1 is default value
-    private char currentPlayer = 'r'; //red by default, toggled in play
     
-    // Movement related variables
-    private HashMap<Integer, Piece> pieceMap = new HashMap<>();
-    private final HashMap<Integer, JButton> boardSpaces = new HashMap<>();
-    private HashSet<Integer> mandatoryJump = new HashSet<>();
-    private final ArrayDeque<Move> moveHistory = new ArrayDeque<>();
-    private boolean pieceJumped = false, jumpAvailable = false,
-            forceJump = false, openingJump = false;
-    private int[] legalMoves, jumpMoves;
+    // Game variables. The rules live in GameState and Rules; this class only
+    // draws the game and passes the user's clicks on to them
+    private final GameState game = new GameState();
+    private final MoveCache moveCache = new MoveCache(); /* legal moves of 
+                                                 recent positions, for 
+                                                 handling clicks
+                                              */
+    private final MoveStack moveHistory = new MoveStack(); /* undo records 
+                                                 from Rules.make(), oldest 
+                                                 first
+                                              */
+    private PdnGame finishedGame; // the last game played to the end
     
-    /**
-     * Nested private class for storing moves for undo capability
-     */
-    private final class Move {        
-        char player;
-        int from;
-        int to;
-        boolean pieceJumped;
-        boolean pieceKinged;
-        boolean availableJump;
-        boolean jumpForced;
-        Icon jumpedIcon;
-    }
+    // Computer player variables
+    private static final int COMPUTER_MAX_DEPTH = 64;
+    private static final String[] THINK_TIME_NAMES = 
+            {"Half a second", "1 second", "2 seconds", "5 seconds", "10 seconds"};
+    private static final long[] THINK_TIMES = {500, 1000, 2000, 5000, 10000};
+    private char computerPlayer = Board.EMPTY; // EMPTY when two people play
+    private long computerThinkTime = 1000; // milliseconds per move
+    private Search computerSearch; // the search in progress, if any
+    private final TranspositionTable computerTable = new TranspositionTable(
+            20, TranspositionTable.Replacement.DEEPER_OR_OLDER); /* kept from 
+                                                move to move and shared by 
+                                                every search
+                                             */
+    private final Tablebase computerTablebase = Tablebase.openIfPresent(
+            Paths.get(Tablebase.DEFAULT_FILE)); // null if none was generated
+    private final OpeningBook computerBook = OpeningBook.openIfPresent(
+            Paths.get(OpeningBook.DEFAULT_FILE)); // null if none was built
+    private final Network computerNetwork = Network.readIfPresent(
+            Paths.get(Network.DEFAULT_FILE)); /* null to score positions with
+                                                 the usual evaluation
+                                              */
+    private final Random bookRandom = new Random();
+    private final Analysis analysis = new Analysis(computerTable); /* hints,
+                                        and the computer thinking on the
+                                        person's time
+                                     */
+    private boolean showHints = false;
+    private int searchGeneration = 0; /* bumped whenever the board changes
+                                         under a search so its move is thrown
+                                         away
+                                      */
     
     /**
      * Constructor
      */
     public Checkers() {
+        analysis.setTablebase(computerTablebase);
+        analysis.setNetwork(computerNetwork);
         createGUI();
         setBoard();
     }    
@@ -92,8 +122,18 @@ public class Checkers implements ActionListener {
             @Override
             public void paintComponent (Graphics g) {
                 super.paintComponent (g);
-                g.drawImage (BACKGROUND, 
-                        0, 0, getWidth(), getHeight(), this);
+                if (background != null) {
+                    // Scaled once for each size the window is made
+                    g.drawImage(background.at(getWidth(), getHeight()), 
+                            0, 0, null);
+                } else {
+                    g.setColor(SANDSTONE);
+                    g.fillRect(0, 0, getWidth(), getHeight());
+                }
+                if (!framePainted) {
+                    framePainted = true;
+                    reportStartup("first frame painted");
+                }
             }
         };
         
@@ -123,6 +163,26 @@ public class Checkers implements ActionListener {
         
         top.add(playerTurn);
         
+        // The best move found for the player to move, when hints are on
+        hintLabel = new JLabel(" ");
+        hintLabel.setOpaque(true);
+        hintLabel.setBackground(playerTurn.getBackground());
+        hintLabel.setForeground(playerTurn.getForeground());
+        hintLabel.setFont(new Font("Serif", Font.BOLD, 20));
+        hintLabel.setVisible(showHints);
+        top.add(hintLabel);
+        
+        // Why a click did nothing, shown for a few seconds without stopping
+        // the game the way a message box would
+        noticeLabel = new JLabel(" ");
+        noticeLabel.setOpaque(true);
+        noticeLabel.setBackground(playerTurn.getBackground());
+        noticeLabel.setForeground(redColor);
+        noticeLabel.setFont(new Font("Serif", Font.BOLD, 20));
+        noticeLabel.setVisible(false);
+        noticeTimer.setRepeats(false);
+        top.add(noticeLabel);
+        
         primaryPanel.add(top, c);
         
         // Create left panel
@@ -135,46 +195,15 @@ public class Checkers implements ActionListener {
         c.gridy = 1;
         primaryPanel.add(left, c);
         
-        // Create the board
-        Dimension size = new Dimension(70, 70); /* size is the size of 
-                                                   each space on the board 
-                                                */
-        board = new JPanel(new GridLayout(8, 8));
+        // Create the board, which sends the key of each space clicked to
+        // actionPerformed()
+        board = new BoardView(game);
         board.setBorder(redTurnBorder);
-        
-        // Creates all spaces and adds them to the board
-        for (int i = 1; i < 9; i++) {
-            for (int j = 1; j < 9; j++) {
-                int count = j;
-                JButton space = new JButton();
-                space.setPreferredSize(size);
-                if (i % 2 != 0) {
-                    count++;
-                }
-                if (count % 2 == 0) {
-                    space.setBackground(redColor);
-                } else {
-                    space.setBackground(Color.BLACK);
-                }
-                
-                // Make sure the button doesn't have a border
-                space.setBorder(null);
-                
-                // Ensure the correct number is assigned
-                int keyValue = 10 * j + i;
-                
-                // ActionCommand takes a string
-                space.setActionCommand(""+keyValue);
-                space.addActionListener(this);  /* ActionListener determines
-                                                   action based on keyValue 
-                                                */
-                
-                // Put the value into the HashMap                               
-                boardSpaces.put(keyValue, space);
-                
-                board.add(space);
-            } 
-        }
+        Assets.whenLoaded((images) -> board.setPieceImages(
+                images[0], images[1], images[2], images[3]), 
+                Assets.RED_MAN, Assets.RED_KING, 
+                Assets.BLACK_MAN, Assets.BLACK_KING);
+        board.setActionListener(this);
         c.gridx = 1;
         primaryPanel.add(board, c);
         
@@ -185,8 +214,11 @@ public class Checkers implements ActionListener {
         primaryPanel.add(right, c);
         
         // Create the menu button
-        ImageIcon menuIcon = new ImageIcon("src/images/gear.png");
-        JButton menuButton = new JButton(menuIcon);
+        JButton menuButton = new JButton();
+        menuButton.setPreferredSize(MENU_ICON_SIZE); // so nothing moves when
+                                                     // the icon arrives
+        Assets.whenLoaded((images) -> 
+                menuButton.setIcon(new ImageIcon(images[0])), Assets.MENU);
         menuButton.setBorder(null);
         menuButton.setActionCommand("menu");  // On click, bring up menu
         menuButton.addActionListener(this);
@@ -222,6 +254,11 @@ public class Checkers implements ActionListener {
         frame.add(primaryPanel);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.pack();
+        Assets.whenScaled(Assets.BACKGROUND, primaryPanel.getWidth(), 
+                primaryPanel.getHeight(), (scaled) -> {
+            background = scaled;
+            primaryPanel.repaint();
+        });
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
@@ -231,10 +268,13 @@ public class Checkers implements ActionListener {
         // Display the menu when menuButton is pressed
         if (e.getActionCommand().equals("menu")){
             displaySettings();
-        } else { // Must be a board space            
+        } else if (game.sideToMove() != computerPlayer) { // Must be a board space
             int key = Integer.parseInt(e.getActionCommand());
+            Metrics.TurnEvent event = Metrics.beginTurn("click");
             takeAction(key);
+            Metrics.endTurn(event);
         }
+        // Clicks on the board are ignored while the computer is thinking
     }    
     
     /**
@@ -242,52 +282,18 @@ public class Checkers implements ActionListener {
      * user wishes to play a new game.
      */
     private void setBoard() {
+        stopComputer();
+        computerTable.clear();
         clearBoard();
-
-        // Create Red's pieces
-        for (int x = 21; x < 101; x += 20) { // first row
-            pieceMap.put(x, new Piece('r'));
-            boardSpaces.get(x).setIcon(RED_CHECKER);
-        }
-        for (int y = 12; y < 92; y += 20) { // second row
-            pieceMap.put(y, new Piece('r'));
-            boardSpaces.get(y).setIcon(RED_CHECKER);
-        }
-        for (int z = 23; z < 103; z += 20) { // third row
-            pieceMap.put(z, new Piece('r'));
-            boardSpaces.get(z).setIcon(RED_CHECKER);
-        }
-
-        // Create Black's pieces
-        for (int a = 16; a < 96; a += 20) { // sixth row
-            pieceMap.put(a, new Piece('b'));
-            boardSpaces.get(a).setIcon(BLACK_CHECKER);
-        }
-        for (int b = 27; b < 107; b += 20) { // seventh row
-            pieceMap.put(b, new Piece('b'));
-            boardSpaces.get(b).setIcon(BLACK_CHECKER);
-        }
-        for (int c = 18; c < 98; c += 20) { // eighth row
-            pieceMap.put(c, new Piece('b'));
-            boardSpaces.get(c).setIcon(BLACK_CHECKER);
-        }
+        game.reset();
+        board.update();
+        updateTurn();
     }
 
     /**
-     * Removes all pieces from the board.
+     * Forgets the game played so far.
      */
     private void clearBoard() {
-        /* Loops through each piece on the board and removes the icon 
-           from each space containing a piece 
-        */
-        for (Map.Entry<Integer, Piece> entry : pieceMap.entrySet()) {
-            int key = entry.getKey();
-            boardSpaces.get(key).setIcon(null);
-        }
-        // Clears out HashMap containing the location of each piece
-        pieceMap = new HashMap<>();
-        
-        // Clears out the move history
         moveHistory.clear();
     }
     
@@ -297,6 +303,8 @@ public class Checkers implements ActionListener {
      * @param key is the selected space's HashMap key.
      */
     private void takeAction(int key){
+        boolean forceJump = legalMoves().mustJump();
+        
         // If there is already a piece highlighted
         if(selectionMade){
             // Deselect the space already selected
@@ -304,228 +312,63 @@ public class Checkers implements ActionListener {
                 removeHighlight();
                 selectionMade = false;
                 spaceSelected = -1; // Return to default value
-            // Require the user to continue jumping
+            // Require the user to jump, or to continue a multiple jump
             } else if (key == spaceSelected && forceJump) {
-                JOptionPane.showMessageDialog(null, "You must continue to "
-                        + "jump until no more jumps are available!",
-                        "Mandatory Jump Available", JOptionPane.ERROR_MESSAGE);
+                if (game.jumpingSquare() >= 0) {
+                    showNotice("You must continue to jump until no more "
+                            + "jumps are available!");
+                } else {
+                    showNotice("You must jump the piece.");
+                }
             // Move the piece to the correct space
             } else if(isMoveLegal(key)) {
                 movePiece(key, spaceSelected);
-            } else if(!isMoveLegal(key) && forceJump){
-                JOptionPane.showMessageDialog(null, "You must jump the piece.",
-                        "Mandatory Jump Available", JOptionPane.ERROR_MESSAGE);
+            } else if(forceJump){
+                showNotice("You must jump the piece.");
             } else {
-                // Deselect the piece
+                // Deselect the piece and select the new space instead
                 removeHighlight();
                 selectionMade = false;
-                // If the current player clicked one of their own pieces
-                if(pieceMap.containsKey(key) && 
-                        pieceMap.get(key).getColor() == currentPlayer){                        
-                    checkMoves(key);
-                    // If the player has a jump immediately available
-                    if(openingJump){
-                        // If they can jump a piece, 
-                        // highlight that for them automatically
-                        if(pieceMap.containsKey(key) && 
-                                pieceMap.get(key).getColor() == currentPlayer &&
-                                mandatoryJump.contains(key)){
-                    
-                            highlightSpace(key, YELLOW);
-                            checkMoves(key);
-                            for(int move : jumpMoves){
-                                highlightSpace(move, GREEN);
-                            }
-                        // Enforce the mandatory jump
-                        } else if(pieceMap.containsKey(key) &&
-                                   pieceMap.get(key).getColor() == currentPlayer){
-                    
-                            JOptionPane.showMessageDialog(null,
-                                "It looks like one of your pieces can jump an "
-                                + "opponent. If you have a jump available, "
-                                + "you must take it.", "Mandatory Jump Available",
-                                JOptionPane.ERROR_MESSAGE);
-                        }
-                    /* Since there's not a jump, 
-                       highlight the moves for the selected piece 
-                    */
-                    } else {
-                        // Loop through legalMoves for this piece
-                        for(int move: legalMoves){
-                            if (move != -1) { // Do nothing if no legal moves
-                                highlightSpace(key, YELLOW);
-                                if(forceJump){ // If jump available, highlight it
-                                    for(int mov : jumpMoves){
-                                        highlightSpace(mov, GREEN);
-                                    }
-                                } else { // Highlight all legal moves
-                                    for(int mov : legalMoves){
-                                        highlightSpace(mov, GREEN);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-                // If they selected an opponent's piece
-                if(pieceMap.containsKey(key) && 
-                    pieceMap.get(key).getColor() != currentPlayer){
-                    
-                    // Give an error message telling them to wait their turn
-                    if(currentPlayer == 'r'){
-                        JOptionPane.showMessageDialog(null, 
-                            "Whoops, not your turn yet. It's red's turn.",
-                            "Wait for your turn!", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(null, 
-                            "Whoops, not your turn yet. It's black's turn.",
-                            "Wait for your turn!", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                    }
-                }
-                // Do nothing if they clicked a space without a piece on it
+                spaceSelected = -1;
+                selectSpace(key);
             }   
             
         // If there is not already a piece highlighted
         } else {
-            // If they select opponent's piece, tell them to wait their turn
-            if(pieceMap.containsKey(key) && 
-                        pieceMap.get(key).getColor() != currentPlayer){
-                    if(currentPlayer == 'r'){
-                        JOptionPane.showMessageDialog(null, 
-                            "Whoops, not your turn yet. It's red's turn.",
-                            "Wait for your turn!", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(null, 
-                            "Whoops, not your turn yet. It's black's turn.",
-                            "Wait for your turn!", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                    }
-            
-            // If the player has a jump immediately available
-            } else if(openingJump){    
-                if(pieceMap.containsKey(key) && 
-                        pieceMap.get(key).getColor() == currentPlayer &&
-                        mandatoryJump.contains(key)){
-                    
-                    highlightSpace(key, YELLOW);
-                    checkMoves(key);
-                    for(int move : jumpMoves){
-                        highlightSpace(move, GREEN);
-                    }
-                } else if(pieceMap.containsKey(key) &&
-                        pieceMap.get(key).getColor() == currentPlayer){
-                    
-                    JOptionPane.showMessageDialog(null,
-                        "It looks like one of your pieces can jump an "
-                        + "opponent. If you have a jump available, "
-                        + "you must take it.", "Mandatory Jump Available",
-                        JOptionPane.ERROR_MESSAGE);
-                }
-            
-            // If the player has no immediate jump and can choose a piece
-            } else if(pieceMap.containsKey(key) && 
-                                pieceMap.get(key).getColor() == currentPlayer){
-                highlightSpace(key, YELLOW);
-                checkMoves(key);                
-                if(forceJump){
-                    for(int move : jumpMoves){
-                        highlightSpace(move, GREEN);
-                    }
-                } else {
-                    for(int move : legalMoves){
-                        highlightSpace(move, GREEN);
-                    }
-                }
-            }
+            selectSpace(key);
         }
     }
     
     /**
-     * Checks for legal moves based on key passed by the action listener
-     * @param key map key that points to where the piece is in both the
-     *            piece map and space map.
+     * Highlights the piece on the selected space along with the spaces it may
+     * move to, or explains why it cannot be selected
+     * @param key is the selected space's HashMap key.
      */
-    private void checkMoves(int key){
-        char color = pieceMap.get(key).getColor();
-        boolean isKing = pieceMap.get(key).getKingStatus();
-        int possibilities = (isKing) ? 4 : 2; /* if it's a king, there are 4
-                                                 move options, otherwise 2
-                                              */
-        int[] option = new int[possibilities];
-        jumpMoves = new int[possibilities];
-        
-        if (isKing){
-            option[0] = key - 9;  // down left
-            option[1] = key + 11; // down right
-            option[2] = key - 11; // up left
-            option[3] = key + 9;  // up right
-        } else if (color == 'r'){
-            option[0] = key - 9;  // down left
-            option[1] = key + 11; // down right
-        } else{
-            option[0] = key - 11; // up left
-            option[1] = key + 9;  // up right
-        }
-        
-        // Check for occupied space
-        for(int i=0;i<possibilities;i++){
-            if(pieceMap.containsKey(option[i])){
-                char tempColor = pieceMap.get(option[i]).getColor();
-                
-                if(color == tempColor){ // The piece is on the same team
-                    option[i] = -1; // Not a move option
-                } else {
-                    // Gets the jump landing spot
-                    option[i] = checkJump(option[i], color, i, isKing);
-                    jumpMoves[i] = 1; /* 1 indicates that a jump was available
-                                         at this index for a later check
-                                      */
-
-                    /* If the jump landing spot contains ANY piece, it's not an
-                       option
-                    */
-                    if(pieceMap.containsKey(option[i])){
-                        option[i] = -1;
-                        jumpMoves[i] = -1; /* During a later check, -1 will mean
-                                              that that index was not a jump opt
-                                           */
-                    }
-                }
-            } else { 
-                jumpMoves[i] = -1;
-            }
-        }
-
-        // Check for out of bounds options
-        for(int i=0;i<possibilities;i++){
-            if(option[i] < 11 || option[i] > 88 || // left and right limits
-                (option[i] > 18 && option[i] < 21) || // 
-                (option[i] > 28 && option[i] < 31) || //
-                (option[i] > 38 && option[i] < 41) || // Vertical
-                (option[i] > 48 && option[i] < 51) || // limits
-                (option[i] > 58 && option[i] < 61) || //
-                (option[i] > 68 && option[i] < 71) || //
-                (option[i] > 78 && option[i] < 81)){  //
-
-                option[i] = -1; // Essentially a null value
-            }
-        }
-        
-        // Finalize jumpMoves after option[] was checked for out of bounds
-        for(int i=0;i<possibilities;i++){
-            if(jumpMoves[i] == 1 && option[i] != -1){
-                jumpMoves[i] = option[i]; // Set that index to the key value
-                jumpAvailable = true;
-                forceJump = true;
+    private void selectSpace(int key){
+        int square = Board.squareOf(key);
+        char color = (square == -1) ? Board.EMPTY : 
+                                      game.board().colorAt(square);
+        
+        // If they select opponent's piece, tell them to wait their turn
+        if(color != Board.EMPTY && color != game.sideToMove()){
+            if(game.sideToMove() == 'r'){
+                showNotice("Whoops, not your turn yet. It's red's turn.");
             } else {
-                jumpMoves[i] = -1;
+                showNotice("Whoops, not your turn yet. It's black's turn.");
+            }
+        } else if(color == game.sideToMove()){
+            int targets = legalMoves().targets(square);
+            if(targets != 0){
+                board.setHighlights(square, targets);
+                selectionMade = true;
+                spaceSelected = key;
+            // Enforce the mandatory jump
+            } else if(legalMoves().mustJump()){
+                showNotice("One of your pieces can jump. If you have a "
+                    + "jump available, you must take it.");
             }
         }
-        
-        legalMoves = option;
+        // Do nothing if they clicked a space without a piece on it
     }
     
     /**
@@ -534,275 +377,264 @@ public class Checkers implements ActionListener {
      * @return true if move is legal, otherwise false
      */
     private boolean isMoveLegal(int key){
-        boolean test = false;
-        
-        if(forceJump){
-            for(int move : jumpMoves){
-                if(key == move)
-                    test = true;
-            }
-        } else {
-            for(int move : legalMoves){
-                if (key == move)
-                    test = true;
-            }
-        }
-        
-        return test;
+        return legalMoves().isLegal(Board.squareOf(spaceSelected), 
+                                    Board.squareOf(key));
     }
     
     /**
-     * checkJump() finds the key value of the board space if a jump was to occur
-     * @param key is the space which another piece is occupying.
-     * @param color the color of the piece in question, used to determine
-     *              movement direction
-     * @param i the current position in the loop, used to determine movement
-     *          direction
-     * @return int key for the landing space of a jump.
+     * @return the legal moves of the player to move, generated only the 
+     * first time they are asked for in a position
      */
-    private int checkJump(int key, char color, int i, boolean isKing){
-        int direction = i; // 0=down-left, 1=d-right, 2=up-left, 3=u-right 
-        int newKey = -1;
-        
-        // Adjust direction if color is black
-        if(color == 'b' && !isKing)
-            direction = i + 2;
-        
-        switch(direction){
-            case 0:
-                newKey = key - 9;
-                break;
-            case 1:
-                newKey = key + 11;
-                break;
-            case 2:
-                newKey = key - 11;
-                break;
-            case 3:
-                newKey = key + 9;
-                break;
-            default:
-                JOptionPane.showMessageDialog(null,"Oops, something went wrong",
-                        "Something's not right...", JOptionPane.ERROR_MESSAGE);
-                break;
-        }
-        
-        return newKey; 
+    private LegalMoves legalMoves(){
+        return moveCache.get(game);
     }
     
     /**
-     * Removes piece from board after being jumped
-     * @param key is the map key of the piece to be removed
-     * @param spaceSelected is the map key of the space that needs to be blank
-     * @return the Icon of the jumped piece, to allow for undo
-     */
-    private Icon jumpPiece(int key, int spaceSelected){
-        Icon jumpedIcon = null;                                 
-        if (key - spaceSelected == 18) { // piece is moving down-left
-            pieceMap.remove(key - 9);
-            jumpedIcon = boardSpaces.get(key - 9).getIcon(); 
-            boardSpaces.get(key - 9).setIcon(null);
-        }
-        if (key - spaceSelected == 22) { // piece is moving up-left
-            pieceMap.remove(key - 11);
-            jumpedIcon = boardSpaces.get(key - 11).getIcon(); 
-            boardSpaces.get(key - 11).setIcon(null);
-        }
-        if (spaceSelected - key == 18) { // piece is moving down-right
-            pieceMap.remove(key + 9);
-            jumpedIcon = boardSpaces.get(key + 9).getIcon(); 
-            boardSpaces.get(key + 9).setIcon(null);
-        }
-        if (spaceSelected - key == 22) { // piece is moving down-right
-            pieceMap.remove(key + 11);
-            jumpedIcon = boardSpaces.get(key + 11).getIcon(); 
-            boardSpaces.get(key + 11).setIcon(null);
-        }
-        
-        return jumpedIcon;
-    }
-    
-    /**
-     * Moves piece to the indicated key, removes the icon from the old key and
-     * creates an icon on the new space.
+     * Plays the move and redraws the spaces it changed.
      * @param key the new position of the piece
      * @param spaceSelected the current position of the piece (and therefore the
      *                      current position on the board)
      */
     private void movePiece(int key, int spaceSelected){
-        // Capture info about this move to store in the moveHistory ArrayDeque
-        Move thisMove = new Move();
-        thisMove.from = spaceSelected;
-        thisMove.to = key;
-        thisMove.player = currentPlayer;
-        
-        Piece piece = pieceMap.get(spaceSelected);
-        JButton toSpace = boardSpaces.get(key);
-        JButton fromSpace = boardSpaces.get(spaceSelected);
-        
-        // Move the piece in the HashMap
-        pieceMap.put(key, piece);
-        pieceMap.remove(spaceSelected);
-        
-        // Move the piece on the GUI        
-        toSpace.setIcon(fromSpace.getIcon());
-        fromSpace.setIcon(null);
-        
-        // Jump a piece if necessary
-        if (Math.abs(key - spaceSelected) > 11) {            
-            thisMove.jumpedIcon = jumpPiece(key, spaceSelected);
-            thisMove.pieceJumped = true; 
-            pieceJumped = true;
-            jumpAvailable = false;
-            // Check for additional jump options
-            checkMoves(key);
-        }
+        analysis.stop();
         
-        // King the piece if necessary
-        if ((piece.getColor() == 'r' && key % 10 == 8) ||
-                piece.getColor() == 'b' && key % 10 == 1) {
-            kingMe(piece, toSpace);
-            thisMove.pieceKinged = true;
-        }
+        // Play the move, keeping what it takes to undo it
+        int undo = Rules.make(game, Rules.move(Board.squareOf(spaceSelected), 
+                                               Board.squareOf(key)));
+        moveHistory.push(undo);
+        int result = Rules.result(undo);
         
-        moveHistory.push(thisMove);
+        // Redraw the spaces the move changed
+        board.update();
         
-        if(pieceJumped && jumpAvailable){
-            /* This creates a clean slate so each subsequent move is fresh, but
-               also keeps track of whether a move is required
-            */
-            cleanUp();
-            forceJump = true;
-            takeAction(key);
+        cleanUp();
+        if((result & Rules.TURN_OVER) != 0){
+            updateTurn();
+        } else if(game.sideToMove() == computerPlayer){
+            playComputerMove();
         } else {
-            cleanUp();
-            changePlayer();
+            // The same piece has to keep jumping, so select it for them
+            startAnalysis();
+            takeAction(key);
         }
     }
     
     /**
-     * Promotes the piece
-     * @param piece the piece to be promoted
-     * @param space the space to be repainted with a king icon
+     * Called after a player's turn ends. Shows whose turn it is now.
      */
-    private void kingMe(Piece piece, JButton space){
-        if (piece.getColor() == 'b'){
-            space.setIcon(BLACK_KING);
+    private void updateTurn(){
+        if (game.sideToMove() == 'b'){
+            board.setBorder(blackTurnBorder);
+            playerTurn.setText("Your turn, Black");
         } else {
-            space.setIcon(RED_KING);
+            board.setBorder(redTurnBorder);
+            playerTurn.setText("Your turn, Red");
         }
-        piece.promotePiece();        
-    }
-    
-    /**
-     * Called after a player's turn ends. Toggles the currentPlayer variable.
-     */
-    private void changePlayer(){
-            if (currentPlayer == 'r'){
-                currentPlayer = 'b';
-                board.setBorder(blackTurnBorder);
-                playerTurn.setText("Your turn, Black");
-             } else {
-                currentPlayer = 'r';
-                board.setBorder(redTurnBorder);
-                playerTurn.setText("Your turn, Red");
-            }
             
         evaluateOptions();
     }
     
     /**
-     * Evaluates the player's moves and pieces prior to beginning their turn. If
-     * the player has no pieces or no available moves, the game ends. If the
-     * player has a jump available, sets forceJump to true.
+     * Evaluates the player's options prior to beginning their turn. If the
+     * player has no pieces or no available moves, the game ends. If it is
+     * the computer's turn, it starts thinking, and otherwise analysis starts
+     * on the person's turn.
      */
     private void evaluateOptions(){
-        int pieceCount = 0;
-        boolean hasMove = false;
-
-        /* Check for required jumps at the beginning of the turn, count the
-           pieces, and check for available moves. If no pieces or no available
-           moves, end the game
-        */
-        for(Map.Entry<Integer, Piece> entry : pieceMap.entrySet()){
-            if (pieceMap.get(entry.getKey()).getColor() == currentPlayer){
-                pieceCount++;
-                checkMoves(entry.getKey());
-                
-                for(int move : legalMoves){
-                    if (move != -1){
-                        hasMove = true;
-                    }
-                }
-                
-                if (jumpAvailable){
-                    openingJump = true;
-                    mandatoryJump.add(entry.getKey());
-                    jumpAvailable = false;  /* Necessary to ensure only elements
-                                               with jumps are added
-                                            */
-                }      
-            }
-        }
+        Metrics.TurnEvent event = Metrics.beginTurn("start of turn");
+        boolean gameOver = legalMoves().isGameOver();
+        Metrics.endTurn(event);
         
         // Ends the game and restarts with a fresh board
-        if( pieceCount == 0 || !hasMove ){
+        if(gameOver){
             endGame();
+        } else if(game.sideToMove() == computerPlayer){
+            playComputerMove();
+        } else {
+            startAnalysis();
         }
     }
     
     /**
-     * Contains the code to end the game and displays who won
+     * Thinks on the person's time, in the background. With hints on, the 
+     * position is analysed and the best move so far shown as it improves. 
+     * Otherwise, when the computer plays, it ponders the reply it expects, 
+     * so its next search finds much of the work already in its table.
      */
-    private void endGame(){
-        if(currentPlayer == 'r'){
-            JOptionPane.showMessageDialog(null, "Black wins!", "Game over!",
-                    JOptionPane.INFORMATION_MESSAGE);
+    private void startAnalysis(){
+        board.setHint(-1);
+        hintLabel.setText(" ");
+        if (legalMoves().isGameOver() || game.sideToMove() == computerPlayer) {
+            analysis.stop();
+        } else if (showHints) {
+            analysis.start(game, this::showHint);
+        } else if (computerPlayer != Board.EMPTY) {
+            analysis.start(expectedReply(), null);
         } else {
-            JOptionPane.showMessageDialog(null, "Red wins!", "Game over!",
-                JOptionPane.INFORMATION_MESSAGE);
+            analysis.stop();
         }
-        cleanUp();
-        setBoard();
     }
     
     /**
-     * Method highlights specified buttons based on user selection or move
-     * options.
-     * @param key is the map key for the corresponding button
-     * @param type determines the color of highlight applied. Checkers.YELLOW
-     *             will highlight yellow, Checkers.GREEN will highlight green
+     * @return the position after the move the computer's table expects the
+     * person to play, or the current position if it has no idea
      */
-    private void highlightSpace(int key, boolean type){                
-        // Check for "null" entry
-        if(key == -1)
-            return;
-        
-        // Highlight width is independent of size of each space
-        sizeOfSpace = boardSpaces.get(key).getSize();
-        int yellowsize = sizeOfSpace.height / 23;
-        int greensize = sizeOfSpace.height / 14;
-        
-        if(type == YELLOW){
-            boardSpaces.get(key).setBorder(
-            BorderFactory.createLineBorder(Color.yellow, yellowsize));
-                
-            selectionMade = true;
-            spaceSelected = key;
+    private GameState expectedReply(){
+        GameState next = new GameState();
+        next.copyFrom(game);
+        int move = TranspositionTable.move(computerTable.probe(game.key()));
+        if (move != -1 && legalMoves().isLegal(Rules.from(move), Rules.to(move))){
+            Rules.play(next, move);
+        }
+        return next;
+    }
+    
+    /**
+     * Shows the best move the analysis has found so far
+     * @param move the packed move
+     * @param score its score for the player to move
+     * @param depth how deep it was searched
+     */
+    private void showHint(int move, int score, int depth){
+        board.setHint(move);
+        String value;
+        if (score >= Search.LEAST_WIN) {
+            value = "winning";
+        } else if (score <= -Search.LEAST_WIN) {
+            value = "losing";
+        } else {
+            value = String.format("%+.2f", score / 100.0);
+        }
+        hintLabel.setText("Hint: " + Fen.moveText(move) + "  " + value + 
+                "  (depth " + depth + ")");
+    }
+    
+    /**
+     * Searches for the computer's move on a background thread, then plays it
+     * through movePiece() back on the event dispatch thread.
+     */
+    private void playComputerMove(){
+        analysis.stop();
+        final int generation = ++searchGeneration;
+        final GameState position = new GameState();
+        position.copyFrom(game);
+        final Search search = new Search(computerTable);
+        search.setTablebase(computerTablebase);
+        search.setNetwork(computerNetwork);
+        final long thinkTime = computerThinkTime;
+        computerSearch = search;
+        
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                // Known openings are played straight away
+                if (computerBook != null) {
+                    int move = computerBook.choose(position, bookRandom);
+                    if (move != -1) {
+                        return move;
+                    }
+                }
+                return search.search(position, COMPUTER_MAX_DEPTH, thinkTime);
+            }
             
+            @Override
+            protected void done() {
+                // Throw the move away if the board changed in the meantime
+                if (generation != searchGeneration) {
+                    return;
+                }
+                computerSearch = null;
+                try {
+                    int move = get();
+                    if (move != -1) {
+                        movePiece(Board.keyOf(Rules.to(move)), 
+                                  Board.keyOf(Rules.from(move)));
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(null, 
+                            "The computer could not find a move.",
+                            "Something's not right...", 
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Stops the computer thinking and makes sure the move it was working on
+     * is never played.
+     */
+    private void stopComputer(){
+        analysis.stop();
+        searchGeneration++;
+        if (computerSearch != null) {
+            computerSearch.stop();
+            computerSearch = null;
+        }
+    }
+    
+    /**
+     * Chooses which side the computer plays
+     * @param side 'r', 'b' or Board.EMPTY for two human players
+     */
+    private void setComputerPlayer(char side){
+        stopComputer();
+        computerPlayer = side;
+        if (side == game.sideToMove() && !legalMoves().isGameOver()) {
+            cleanUp();
+            playComputerMove();
         } else {
-            boardSpaces.get(key).setBorder(
-                BorderFactory.createLineBorder(Color.green, greensize));
+            startAnalysis();
         }
     }
     
+    /**
+     * Contains the code to end the game and displays who won. The message
+     * does not block; the final position stays on the board until it is 
+     * closed, and then a new game starts unless a move was taken back.
+     */
+    private void endGame(){
+        finishedGame = gameRecord();
+        cleanUp();
+        if (gameOverDialog != null) {
+            gameOverDialog.dispose();
+        }
+        String winner = (game.sideToMove() == 'r') ? "Black wins!" 
+                                                   : "Red wins!";
+        JOptionPane pane = new JOptionPane(winner, 
+                JOptionPane.INFORMATION_MESSAGE);
+        JDialog dialog = pane.createDialog(frame, "Game over!");
+        dialog.setModal(false);
+        dialog.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                dialog.dispose();
+                if (gameOverDialog == dialog) {
+                    gameOverDialog = null;
+                    if (legalMoves().isGameOver()) {
+                        setBoard();
+                    }
+                }
+            }
+        });
+        gameOverDialog = dialog;
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * Shows a message above the board for a few seconds
+     */
+    private void showNotice(String message){
+        noticeLabel.setText(message);
+        noticeLabel.setVisible(true);
+        noticeTimer.restart();
+    }
+    
     /**
      * Removes all highlights on the board
      */
     private void removeHighlight(){
-        for(Map.Entry<Integer, JButton> entry : boardSpaces.entrySet()){
-            boardSpaces.get(entry.getKey()).setBorder(null);
-        }
+        board.clearHighlights();
     }
     
     /**
@@ -811,11 +643,6 @@ public class Checkers implements ActionListener {
     private void cleanUp(){
         selectionMade = false;
         spaceSelected = -1;
-        forceJump = false;
-        openingJump = false;
-        pieceJumped = false; 
-        jumpAvailable = false;
-        mandatoryJump = new HashSet<>();
         removeHighlight();
     }
     
@@ -842,8 +669,74 @@ public class Checkers implements ActionListener {
             undoMove();
         });
         
+        JButton saveButton = new JButton("Save Game...");
+        if (moveHistory.isEmpty() && finishedGame == null){
+            saveButton.setEnabled(false);
+        }
+        saveButton.addActionListener((ActionEvent e) -> {
+            saveGame(dialog);
+        });
+        
+        // Let the computer take one side
+        JComboBox<String> computerBox = new JComboBox<>(
+                new String[] {"Nobody", "Red", "Black"});
+        if (computerPlayer == 'r'){
+            computerBox.setSelectedIndex(1);
+        } else if (computerPlayer == 'b'){
+            computerBox.setSelectedIndex(2);
+        }
+        computerBox.addActionListener((ActionEvent e) -> {
+            switch (computerBox.getSelectedIndex()) {
+                case 1:
+                    setComputerPlayer('r');
+                    break;
+                case 2:
+                    setComputerPlayer('b');
+                    break;
+                default:
+                    setComputerPlayer(Board.EMPTY);
+                    break;
+            }
+        });
+        
+        // How long the computer may think about each move
+        JComboBox<String> thinkTimeBox = new JComboBox<>(THINK_TIME_NAMES);
+        for (int i = 0; i < THINK_TIMES.length; i++){
+            if (THINK_TIMES[i] == computerThinkTime){
+                thinkTimeBox.setSelectedIndex(i);
+            }
+        }
+        thinkTimeBox.addActionListener((ActionEvent e) -> {
+            computerThinkTime = THINK_TIMES[thinkTimeBox.getSelectedIndex()];
+        });
+        
+        JPanel computerPanel = new JPanel();
+        computerPanel.add(new JLabel("Computer plays:"));
+        computerPanel.add(computerBox);
+        JPanel thinkTimePanel = new JPanel();
+        thinkTimePanel.add(new JLabel("Time per move:"));
+        thinkTimePanel.add(thinkTimeBox);
+        // Analysis of the position for the player to move
+        JCheckBox hintBox = new JCheckBox("Show hints", showHints);
+        hintBox.addActionListener((ActionEvent e) -> {
+            showHints = hintBox.isSelected();
+            hintLabel.setVisible(showHints);
+            if (game.sideToMove() != computerPlayer) {
+                startAnalysis();
+            }
+        });
+        JPanel hintPanel = new JPanel();
+        hintPanel.add(hintBox);
+        JPanel undoPanel = new JPanel();
+        undoPanel.add(undoButton);
+        undoPanel.add(saveButton);
+        
         JPanel settingsPanel = new JPanel();
-        settingsPanel.add(undoButton); 
+        settingsPanel.setLayout(new BoxLayout(settingsPanel, BoxLayout.PAGE_AXIS));
+        settingsPanel.add(undoPanel); 
+        settingsPanel.add(computerPanel);
+        settingsPanel.add(thinkTimePanel);
+        settingsPanel.add(hintPanel);
         JPanel closePanel = new JPanel();
         closePanel.add(closeButton);
         JPanel contentPane = new JPanel(new BorderLayout());
@@ -858,6 +751,67 @@ public class Checkers implements ActionListener {
         dialog.setVisible(true);
     }
     
+    /**
+     * Saves the game in progress, or the last one finished if none has begun,
+     * to a PDN file the user chooses
+     * @param parent the window to show the file chooser over
+     */
+    private void saveGame(Component parent){
+        PdnGame record = moveHistory.isEmpty() ? finishedGame : gameRecord();
+        if (record == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("game.pdn"));
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try (PdnWriter writer = PdnWriter.open(
+                chooser.getSelectedFile().toPath(), false)) {
+            writer.write(record);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(parent, 
+                    "The game could not be saved: " + e.getMessage(),
+                    "Something's not right...", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Turns the move history into a game record. A multiple jump still in
+     * progress is written as far as it has got.
+     * @return the game so far in PDN
+     */
+    private PdnGame gameRecord(){
+        PdnGame record = new PdnGame();
+        record.setTag("Event", "Casual game");
+        record.setTag("Date", LocalDate.now().format(
+                DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        // PDN's Black moves first, which is Red here
+        record.setTag("Black", computerPlayer == 'r' ? "Computer" : "Red");
+        record.setTag("White", computerPlayer == 'b' ? "Computer" : "Black");
+        
+        int[] hops = new int[12];
+        int count = 0;
+        for (int i = 0; i < moveHistory.size(); i++) {
+            int undo = moveHistory.get(i);
+            hops[count++] = Rules.undoneMove(undo);
+            if ((Rules.result(undo) & Rules.TURN_OVER) != 0) {
+                record.addMove(Fen.turnText(hops, count));
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            record.addMove(Fen.turnText(hops, count));
+        }
+        
+        if (legalMoves().isGameOver()) {
+            record.setResult(game.sideToMove() == 'r' ? 
+                    PdnGame.BLACK_WINS : PdnGame.RED_WINS);
+        }
+        record.setTag("Result", record.result());
+        return record;
+    }
+    
     /**
      * Called when the user presses CTRL+Z or 
      * the undo button in the settings menu
@@ -866,60 +820,16 @@ public class Checkers implements ActionListener {
         if (moveHistory.isEmpty()){
             return;
         }
-        // Get the last move
-        Move lastMove = moveHistory.pop();
-                
-        Piece piece = pieceMap.get(lastMove.to);
-        JButton toSpace = boardSpaces.get(lastMove.from);
-        JButton fromSpace = boardSpaces.get(lastMove.to);
-        
-        // Move the piece in the pieceMap
-        pieceMap.put(lastMove.from, piece);
-        pieceMap.remove(lastMove.to);
-        
-        // Move the piece on the GUI        
-        toSpace.setIcon(fromSpace.getIcon());
-        fromSpace.setIcon(null);        
-              
-        // Unjump a piece if necessary
-        if (lastMove.pieceJumped) {
-            Piece jumpedPiece;
-            if (lastMove.player == 'r'){
-                jumpedPiece = new Piece('b');
-            } else {
-                jumpedPiece = new Piece('r');
-            }
-            if (lastMove.jumpedIcon == RED_KING || 
-                    lastMove.jumpedIcon == BLACK_KING){
-                jumpedPiece.promotePiece();
-            }
-            if (lastMove.to - lastMove.from == 18) { 
-                pieceMap.put(lastMove.to - 9, jumpedPiece);
-                boardSpaces.get(lastMove.to - 9).setIcon(lastMove.jumpedIcon);
-            }
-            if (lastMove.to - lastMove.from == 22) { 
-                pieceMap.put(lastMove.to - 11, jumpedPiece);
-                boardSpaces.get(lastMove.to - 11).setIcon(lastMove.jumpedIcon);
-            }
-            if (lastMove.from - lastMove.to == 18) { 
-                pieceMap.put(lastMove.to + 9, jumpedPiece);
-                boardSpaces.get(lastMove.to + 9).setIcon(lastMove.jumpedIcon);
-            }
-            if (lastMove.from - lastMove.to == 22) { 
-                pieceMap.put(lastMove.to + 11, jumpedPiece);
-                boardSpaces.get(lastMove.to + 11).setIcon(lastMove.jumpedIcon);
-            }
-        } 
+        stopComputer();
         
-        // Unking the piece if necessary
-        if (lastMove.pieceKinged) {
-            if (piece.getColor() == 'b'){
-                toSpace.setIcon(BLACK_CHECKER);
-            } else {
-                toSpace.setIcon(RED_CHECKER);
-            }
-            piece.demotePiece();
-        }
+        /* When playing the computer, take back its reply too so that it is
+           the person's turn again
+        */
+        int lastMove;
+        do {
+            lastMove = takeBackMove();
+        } while (game.sideToMove() == computerPlayer && !moveHistory.isEmpty());
+        int fromSquare = Rules.from(lastMove);
         
         // Disable the undoButton in the Settings menu
         if (undoButton != null && moveHistory.isEmpty()){
@@ -928,38 +838,62 @@ public class Checkers implements ActionListener {
         
         // Take care of highlights and forced jumps
         cleanUp();
-        if(lastMove.player != currentPlayer){
-            changePlayer();
-        }
+        updateTurn();
         
         // Reset the selection to the piece that was just reverted
-        takeAction(lastMove.from);
-        
-        // Get the move prior to the undo
-        Move prior = null;
-        try{
-            prior = moveHistory.pop();
-            if(lastMove.pieceJumped && prior.player == currentPlayer){
-            forceJump = true;
-            selectionMade = true;
-            spaceSelected = lastMove.from;
-            } else if(lastMove.pieceJumped && prior.player != currentPlayer){
-                evaluateOptions();
-            }
-        } catch (NoSuchElementException e){}
-        
-        
-        
-        // Replace the prior move to avoid a null pointer if multiple undos
-        if(prior != null){
-            moveHistory.push(prior);
+        if (game.sideToMove() != computerPlayer && 
+                legalMoves().targets(fromSquare) != 0){
+            takeAction(Board.keyOf(fromSquare));
+        }
+    }
+    
+    /**
+     * Takes the last move off the board and out of the move history. The
+     * undo record knows whose turn it was and whether they were partway 
+     * through a multiple jump, so undo can go back any number of moves.
+     * @return the undo record of the move that was taken back
+     */
+    private int takeBackMove(){
+        int lastMove = moveHistory.pop();
+        Rules.unmake(game, lastMove);
+        board.update();
+        return lastMove;
+    }
+    
+    /**
+     * Prints how long after the JVM and main() started something happened,
+     * if the checkers.startupTime property is true
+     * @param event what happened
+     */
+    private static void reportStartup(String event) {
+        if (!Boolean.getBoolean("checkers.startupTime")) {
+            return;
         }
+        long sinceMain = (System.nanoTime() - MAIN_STARTED) / 1000000;
+        long sinceJvm = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+        System.err.println("Startup: " + event + " " + sinceJvm + 
+                " ms after the JVM started, " + sinceMain + 
+                " ms after main()");
     }
     
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+        // Decode the pictures while Swing starts and the window is built
+        Assets.preload();
+        Metrics.registerMBean();
+        EdtWatchdog watchdog = EdtWatchdog.install(
+                Long.getLong("checkers.stallMillis", 200));
+        if (Metrics.ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> 
+                    System.err.println("Click to repaint: " 
+                            + watchdog.inputLatency())));
+        }
+        Assets.image(Assets.BACKGROUND).thenRun(() -> 
+                reportStartup("background decoded"));
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
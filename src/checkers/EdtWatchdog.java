@@ -0,0 +1,170 @@
+package checkers;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+
+/**
+ * Watches the event dispatch thread. It times every click and key press
+ * from when it happened to when the window has been repainted in answer,
+ * into a LatencyHistogram, and reports to System.err, with the stack of the
+ * thread at that moment, whenever the thread has been busy with one event
+ * for longer than a threshold, so that whatever froze the window can be
+ * found.
+ *
+ * It works by taking the place of the window's event queue, so it sees
+ * each event as it is dispatched. Repaints asked for while handling an
+ * event are done by an event queued before any queued after it has been
+ * handled, so an input is counted as answered when an event queued after
+ * it runs. A modal dialog dispatches events itself, so the thread is not
+ * counted as busy while one is open, only while it handles each of those
+ * events; the work the event that opened it does after it closes is not
+ * timed.
+ */
+public final class EdtWatchdog extends EventQueue {
+
+    private static final int MAX_STACK_FRAMES = 40;
+    private static final long MAX_QUEUED_MILLIS = 10000;
+
+    private static volatile EdtWatchdog installed;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final long stallNanos;
+    private volatile Thread dispatchThread;
+    // When the thread started on the event it is handling, or 0 when idle
+    private volatile long busySince;
+    private volatile AWTEvent current;
+    private volatile long stalls;
+    private long reported; // the busySince of the last stall reported
+    private int depth;     // events being dispatched, more than one in a modal
+
+    private EdtWatchdog(long stallMillis) {
+        stallNanos = stallMillis * 1000000;
+    }
+
+    /**
+     * Starts watching the event dispatch thread, once; later calls return
+     * the watchdog already installed.
+     * @param stallMillis how long the thread may be busy with one event
+     *                    before it is reported, or 0 to only time inputs
+     */
+    public static synchronized EdtWatchdog install(long stallMillis) {
+        if (installed == null) {
+            installed = new EdtWatchdog(stallMillis);
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+            if (stallMillis > 0) {
+                Thread watcher = new Thread(installed::watch, "edt-watchdog");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+        }
+        return installed;
+    }
+
+    /**
+     * @return the watchdog installed, or null if there is none
+     */
+    public static EdtWatchdog installed() {
+        return installed;
+    }
+
+    /**
+     * @return the times from a click or key press to the window being
+     * repainted
+     */
+    public LatencyHistogram inputLatency() {
+        return latency;
+    }
+
+    /**
+     * @return how many times the thread has been reported busy
+     */
+    public long stalls() {
+        return stalls;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long started = System.nanoTime();
+        if (depth++ == 0) {
+            dispatchThread = Thread.currentThread();
+        }
+        current = event;
+        busySince = started;
+        long inputAt = isInput(event) ? happened((InputEvent) event, started) : 0;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            // Idle until the next event, even when a modal dialog's event
+            // ends: the dialog is only waiting for input, and the event that
+            // opened it is not timed again until it returns
+            depth--;
+            busySince = 0;
+            current = null;
+            if (inputAt != 0) {
+                invokeLater(() -> latency.record(System.nanoTime() - inputAt));
+            }
+        }
+    }
+
+    private static boolean isInput(AWTEvent event) {
+        return event.getID() == MouseEvent.MOUSE_PRESSED
+                || event.getID() == KeyEvent.KEY_PRESSED;
+    }
+
+    /**
+     * @return the event's time on the nanoTime() clock, counting the time it
+     * spent queued
+     */
+    private static long happened(InputEvent event, long now) {
+        long queued = System.currentTimeMillis() - event.getWhen();
+        if (queued < 0 || queued > MAX_QUEUED_MILLIS) {
+            queued = 0; // a clock that jumped, or a synthesized event
+        }
+        return now - queued * 1000000;
+    }
+
+    /**
+     * Runs on its own thread, looking in on the event dispatch thread a few
+     * times a threshold
+     */
+    private void watch() {
+        long interval = Math.max(stallNanos / 4000000, 10);
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long since = busySince;
+            if (since != 0 && since != reported
+                    && System.nanoTime() - since > stallNanos) {
+                reported = since;
+                stalls++;
+                report(since, current, dispatchThread);
+            }
+        }
+    }
+
+    private static void report(long since, AWTEvent event, Thread thread) {
+        StringBuilder text = new StringBuilder("Event dispatch thread busy for ");
+        text.append((System.nanoTime() - since) / 1000000).append(" ms");
+        if (event != null) {
+            text.append(" handling ").append(event.getClass().getSimpleName());
+        }
+        text.append(':');
+        StackTraceElement[] stack = (thread == null) ? new StackTraceElement[0]
+                                                     : thread.getStackTrace();
+        for (int i = 0; i < stack.length && i < MAX_STACK_FRAMES; i++) {
+            text.append("\n\tat ").append(stack[i]);
+        }
+        if (stack.length > MAX_STACK_FRAMES) {
+            text.append("\n\t... ").append(stack.length - MAX_STACK_FRAMES)
+                .append(" more");
+        }
+        System.err.println(text);
+    }
+}
@@ -0,0 +1,184 @@
+package checkers;
+
+/**
+ * Numbers the positions of an endgame for the tablebase. Positions are
+ * grouped by material: the number of red men, red kings, black men and black
+ * kings, packed into one int by material(). Within a group each position gets
+ * an index from 0 to size() - 1, built from the rank of each kind of piece's
+ * squares among all the ways to place that many of them. Men can never stand
+ * on their own king row, so red men use squares 0-27 and black men 4-31.
+ *
+ * Two kinds of piece may be given the same square by an index. Those indexes
+ * are not positions; setUp() reports them.
+ */
+final class EndgameIndex {
+
+    /** Most pieces of one kind the index can describe */
+    static final int MAX_OF_A_KIND = 6;
+
+    /** Number of different values compact() can return */
+    static final int MATERIALS = (MAX_OF_A_KIND + 1) * (MAX_OF_A_KIND + 1)
+            * (MAX_OF_A_KIND + 1) * (MAX_OF_A_KIND + 1);
+
+    // Men can stand on 28 squares; black men's start at square 4
+    private static final int MEN_SQUARES = 28;
+    private static final int BLACK_MEN_OFFSET = 4;
+
+    // CHOOSE[n][k] is n choose k
+    private static final long[][] CHOOSE = new long[33][MAX_OF_A_KIND + 1];
+
+    static {
+        for (int n = 0; n <= 32; n++) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= MAX_OF_A_KIND; k++) {
+                CHOOSE[n][k] = (n == 0) ? 0 : CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+            }
+        }
+    }
+
+    private EndgameIndex() {
+    }
+
+    /**
+     * @return the material of a group, packed into an int
+     */
+    static int material(int redMen, int redKings, int blackMen, int blackKings) {
+        return redMen | (redKings << 4) | (blackMen << 8) | (blackKings << 12);
+    }
+
+    /**
+     * @return the material on a board
+     */
+    static int material(Board board) {
+        int kings = board.kings();
+        int red = board.pieces('r');
+        int black = board.pieces('b');
+        return material(Integer.bitCount(red & ~kings),
+                Integer.bitCount(red & kings),
+                Integer.bitCount(black & ~kings),
+                Integer.bitCount(black & kings));
+    }
+
+    static int redMen(int material) {
+        return material & 0xF;
+    }
+
+    static int redKings(int material) {
+        return (material >>> 4) & 0xF;
+    }
+
+    static int blackMen(int material) {
+        return (material >>> 8) & 0xF;
+    }
+
+    static int blackKings(int material) {
+        return (material >>> 12) & 0xF;
+    }
+
+    static int pieces(int material) {
+        return redMen(material) + redKings(material)
+                + blackMen(material) + blackKings(material);
+    }
+
+    /**
+     * @return a small number, unique for every material of up to
+     * MAX_OF_A_KIND pieces of each kind, for indexing tables by material
+     */
+    static int compact(int material) {
+        int base = MAX_OF_A_KIND + 1;
+        return ((redMen(material) * base + redKings(material)) * base
+                + blackMen(material)) * base + blackKings(material);
+    }
+
+    /**
+     * @return the number of indexes in a material group
+     */
+    static long size(int material) {
+        return CHOOSE[MEN_SQUARES][redMen(material)]
+                * CHOOSE[MEN_SQUARES][blackMen(material)]
+                * CHOOSE[32][redKings(material)]
+                * CHOOSE[32][blackKings(material)];
+    }
+
+    /**
+     * @param board a position whose material is material
+     * @return the index of that position within its group
+     */
+    static long index(Board board, int material) {
+        int kings = board.kings();
+        int red = board.pieces('r');
+        int black = board.pieces('b');
+        long index = rank(red & ~kings, 0);
+        index = index * CHOOSE[MEN_SQUARES][blackMen(material)]
+                + rank(black & ~kings, BLACK_MEN_OFFSET);
+        index = index * CHOOSE[32][redKings(material)] + rank(red & kings, 0);
+        index = index * CHOOSE[32][blackKings(material)]
+                + rank(black & kings, 0);
+        return index;
+    }
+
+    /**
+     * Sets up the position with the given index.
+     * @return false if the index puts two pieces on one square, in which case
+     * the board is left partly set up
+     */
+    static boolean setUp(Board board, int material, long index) {
+        board.clear();
+        long blackKingCount = CHOOSE[32][blackKings(material)];
+        long redKingCount = CHOOSE[32][redKings(material)];
+        long blackMenCount = CHOOSE[MEN_SQUARES][blackMen(material)];
+
+        long blackKingRank = index % blackKingCount;
+        index /= blackKingCount;
+        long redKingRank = index % redKingCount;
+        index /= redKingCount;
+        long blackMenRank = index % blackMenCount;
+        long redMenRank = index / blackMenCount;
+
+        return place(board, redMenRank, redMen(material), 0, 'r', false)
+                && place(board, blackMenRank, blackMen(material),
+                        BLACK_MEN_OFFSET, 'b', false)
+                && place(board, redKingRank, redKings(material), 0, 'r', true)
+                && place(board, blackKingRank, blackKings(material), 0, 'b',
+                        true);
+    }
+
+    /**
+     * @return the rank of a set of squares (counted from offset) among all
+     * sets of the same size, in colexicographic order
+     */
+    private static long rank(int squares, int offset) {
+        long rank = 0;
+        int i = 1;
+        while (squares != 0) {
+            int square = Integer.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            rank += CHOOSE[square - offset][i++];
+        }
+        return rank;
+    }
+
+    /**
+     * Places count pieces on the squares with the given rank.
+     * @return false if one of the squares is already taken
+     */
+    private static boolean place(Board board, long rank, int count, int offset,
+            char color, boolean king) {
+        int limit = 32 - offset;
+        for (int i = count; i >= 1; i--) {
+            // The largest square whose binomial still fits in what is left
+            int position = i - 1;
+            while (position + 1 < limit && CHOOSE[position + 1][i] <= rank) {
+                position++;
+            }
+            rank -= CHOOSE[position][i];
+            limit = position;
+            int square = position + offset;
+            if (board.isOccupied(square)) {
+                return false;
+            }
+            board.place(square, color, king);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+package checkers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Static evaluation of a position for the computer player. Scores are in
+ * hundredths of a man and always from the point of view of the player to
+ * move, so a positive score means that player is ahead.
+ *
+ * The weights are read once, when the class loads, from the file named by
+ * the checkers.weights system property, or else from DEFAULT_FILE in the
+ * working directory if there is one, such as EvaluationTuner writes. Any
+ * weight a file leaves out, and every weight when there is no file, has
+ * the value picked by hand below.
+ */
+public final class Evaluation {
+
+    /** Where the weights are read from when no other file is named */
+    public static final String DEFAULT_FILE = "weights.properties";
+
+    /** The name of each weight in a weights file, in the order of features() */
+    static final String[] NAMES = {"man", "king", "backRank", "center"};
+
+    // Weights picked by hand, in the order of NAMES
+    static final int[] DEFAULTS = {
+        100,  // a man, the unit the others are measured in
+        130,  // a king
+        8,    // men still guarding the home row
+        4,    // pieces on the middle squares
+    };
+
+    private static final int[] WEIGHTS = loadWeights();
+    private static final int MAN = WEIGHTS[0];
+    private static final int KING = WEIGHTS[1];
+    private static final int BACK_RANK = WEIGHTS[2];
+    private static final int CENTER = WEIGHTS[3];
+
+    private static final int RED_BACK_ROW = 0x0000000F;
+    private static final int BLACK_BACK_ROW = 0xF0000000;
+    private static final int CENTER_SQUARES = 0x00666600;
+
+    private Evaluation() {
+    }
+
+    /**
+     * @param state the game
+     * @return the score of the position for the player to move
+     */
+    public static int evaluate(GameState state) {
+        Board board = state.board();
+        int kings = board.kings();
+        int red = board.pieces('r');
+        int black = board.pieces('b');
+
+        int score = MAN * (Integer.bitCount(red & ~kings)
+                        - Integer.bitCount(black & ~kings))
+                + KING * (Integer.bitCount(red & kings)
+                        - Integer.bitCount(black & kings))
+                + BACK_RANK * (Integer.bitCount(red & ~kings & RED_BACK_ROW)
+                        - Integer.bitCount(black & ~kings & BLACK_BACK_ROW))
+                + CENTER * (Integer.bitCount(red & CENTER_SQUARES)
+                        - Integer.bitCount(black & CENTER_SQUARES));
+
+        return (state.sideToMove() == 'r') ? score : -score;
+    }
+
+    /**
+     * Counts what each weight is multiplied by, Red's count less Black's, so
+     * that evaluate() is the sum of each weight times its feature, negated
+     * when Black is to move.
+     * @param features filled with one count for each of NAMES
+     */
+    static void features(Board board, int[] features) {
+        int kings = board.kings();
+        int red = board.pieces('r');
+        int black = board.pieces('b');
+        features[0] = Integer.bitCount(red & ~kings)
+                - Integer.bitCount(black & ~kings);
+        features[1] = Integer.bitCount(red & kings)
+                - Integer.bitCount(black & kings);
+        features[2] = Integer.bitCount(red & ~kings & RED_BACK_ROW)
+                - Integer.bitCount(black & ~kings & BLACK_BACK_ROW);
+        features[3] = Integer.bitCount(red & CENTER_SQUARES)
+                - Integer.bitCount(black & CENTER_SQUARES);
+    }
+
+    /**
+     * @return a copy of the weights in use, in the order of NAMES
+     */
+    static int[] weights() {
+        return WEIGHTS.clone();
+    }
+
+    /**
+     * @return the weights in a file, with the hand-picked value for any it
+     * leaves out
+     * @exception IOException if the file cannot be read or a weight is not
+     * a number
+     */
+    static int[] readWeights(Path path) throws IOException {
+        Properties file = new Properties();
+        try (Reader in = Files.newBufferedReader(path)) {
+            file.load(in);
+        }
+        int[] weights = DEFAULTS.clone();
+        for (int i = 0; i < NAMES.length; i++) {
+            String value = file.getProperty(NAMES[i]);
+            if (value == null) {
+                continue;
+            }
+            try {
+                weights[i] = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException(NAMES[i]
+                        + " is not a whole number: " + value);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Writes weights in the order of NAMES, after a comment.
+     */
+    static void writeWeights(Path path, int[] weights, String comment)
+            throws IOException {
+        try (Writer out = Files.newBufferedWriter(path)) {
+            out.write("# " + comment + System.lineSeparator());
+            for (int i = 0; i < NAMES.length; i++) {
+                out.write(NAMES[i] + "=" + weights[i] + System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Reads the weights to use, falling back on the hand-picked ones if the
+     * file named cannot be read
+     */
+    private static int[] loadWeights() {
+        String named = System.getProperty("checkers.weights");
+        Path path = Paths.get((named != null) ? named : DEFAULT_FILE);
+        if (named == null && !Files.isRegularFile(path)) {
+            return DEFAULTS.clone();
+        }
+        try {
+            return readWeights(path);
+        } catch (IOException e) {
+            System.err.println("Cannot read evaluation weights " + path + ": "
+                    + e.getMessage());
+            return DEFAULTS.clone();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package checkers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Fits the evaluation's weights to the results of games, the way Texel's
+ * tuning does: every quiet position of every finished game is labelled with
+ * the game's result, and the weights are chosen so that a logistic curve of
+ * the evaluation predicts those results as closely as possible, measured by
+ * the mean squared error. The weights found are written to a file that
+ * Evaluation reads when the engine starts.
+ *
+ * Usage: java checkers.EvaluationTuner [options] games.pdn...
+ *
+ * Options:
+ *
+ *   --output FILE      where to write the weights (default
+ *                      weights.properties)
+ *   --threads N        threads to read games and fit with (default: number
+ *                      of processors)
+ *   --iterations N     gradient descent steps (default 2000)
+ *   --skip-plies N     leave out the first N plies of each game, which
+ *                      come from openings more than the evaluation
+ *                      (default 8)
+ *
+ * The evaluation is a weighted sum of a few small counts, so the millions of
+ * positions in an archive share a few thousand different sets of counts.
+ * Positions are grouped by their counts as they are read, each group
+ * keeping how many of its games Red won, drew and lost, and the error and
+ * its gradient are worked out over the groups. A step of the fit then takes
+ * microseconds however many positions were read, memory stays flat, and
+ * the time goes on reading the games, which every thread shares.
+ *
+ * The man is the unit the evaluation is measured in, so its weight stays at
+ * 100 and the steepness of the curve is fitted instead, before the other
+ * weights. They are fitted by gradient descent (Adam), rounded, then
+ * nudged one at a time while that still lowers the error.
+ */
+public final class EvaluationTuner {
+
+    private static final int FEATURES = Evaluation.NAMES.length;
+    private static final int CHUNK = 1024; // groups summed by one task
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java checkers.EvaluationTuner [options] games.pdn...",
+            "Options: --output FILE, --threads N, --iterations N,",
+            "  --skip-plies N");
+
+    // Each group's counts, FEATURES to a group, and how its games ended
+    private final int[] features;
+    private final long[] redWins;
+    private final long[] draws;
+    private final long[] blackWins;
+    private final int groups;
+    private final long positions;
+    private double steepness = 0.01;
+
+    private EvaluationTuner(Map<Long, long[]> grouped) {
+        groups = grouped.size();
+        features = new int[groups * FEATURES];
+        redWins = new long[groups];
+        draws = new long[groups];
+        blackWins = new long[groups];
+        long total = 0;
+        int g = 0;
+        for (Map.Entry<Long, long[]> entry : grouped.entrySet()) {
+            unpack(entry.getKey(), features, g * FEATURES);
+            long[] results = entry.getValue();
+            redWins[g] = results[0];
+            draws[g] = results[1];
+            blackWins[g] = results[2];
+            total += results[0] + results[1] + results[2];
+            g++;
+        }
+        positions = total;
+    }
+
+    /**
+     * Reads the quiet positions of every finished game in some files,
+     * grouped by their features.
+     */
+    private static Map<Long, long[]> read(List<Path> files, int threads,
+            int skipPlies) throws IOException {
+        // Each reading thread fills a map of its own; they are merged after
+        List<Map<Long, long[]>> maps = new ArrayList<>();
+        ThreadLocal<Map<Long, long[]>> local = ThreadLocal.withInitial(() -> {
+            Map<Long, long[]> map = new HashMap<>();
+            synchronized (maps) {
+                maps.add(map);
+            }
+            return map;
+        });
+        AtomicLong games = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        for (Path file : files) {
+            PdnReader.forEachParallel(file, threads, game -> {
+                int result = outcome(game.result());
+                if (result == -1) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                long[] keys;
+                try {
+                    keys = quietPositions(game, skipPlies);
+                } catch (IllegalArgumentException e) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                Map<Long, long[]> map = local.get();
+                for (long key : keys) {
+                    map.computeIfAbsent(key, k -> new long[3])[result]++;
+                }
+                games.incrementAndGet();
+            });
+        }
+        Map<Long, long[]> grouped = new HashMap<>();
+        for (Map<Long, long[]> map : maps) {
+            map.forEach((key, results) -> grouped.merge(key, results,
+                    (a, b) -> new long[] {a[0] + b[0], a[1] + b[1], a[2] + b[2]}));
+        }
+        System.out.printf("%d games read, %d unfinished or unreadable%n",
+                games.get(), skipped.get());
+        return grouped;
+    }
+
+    /**
+     * @return 0 if Red won, 1 for a draw, 2 if Black won, or -1 for a game
+     * that did not finish
+     */
+    private static int outcome(String result) {
+        switch (result) {
+            case PdnGame.RED_WINS:
+            case "2-0":
+                return 0;
+            case PdnGame.DRAW:
+            case "1-1":
+                return 1;
+            case PdnGame.BLACK_WINS:
+            case "0-2":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return the packed features of each position of a game after a
+     * turn, leaving out the first plies and any with a jump to make
+     * @exception IllegalArgumentException if a turn is not legal
+     */
+    private static long[] quietPositions(PdnGame game, int skipPlies) {
+        GameState state = game.start();
+        int[] hops = new int[12];
+        int[] counts = new int[FEATURES];
+        long[] keys = new long[game.moves().size()];
+        int found = 0;
+        int ply = 0;
+        for (String turn : game.moves()) {
+            int count = Fen.parseTurn(state, turn, hops);
+            for (int i = 0; i < count; i++) {
+                Rules.play(state, hops[i]);
+            }
+            if (++ply > skipPlies && Rules.jumpers(state) == 0
+                    && !Rules.isGameOver(state)) {
+                Evaluation.features(state.board(), counts);
+                keys[found++] = pack(counts);
+            }
+        }
+        return Arrays.copyOf(keys, found);
+    }
+
+    /**
+     * Packs features into a long, eight bits each, which holds any count
+     * of a player's pieces less the other's
+     */
+    private static long pack(int[] counts) {
+        long key = 0;
+        for (int i = 0; i < FEATURES; i++) {
+            key |= (long) (counts[i] & 0xFF) << (8 * i);
+        }
+        return key;
+    }
+
+    private static void unpack(long key, int[] counts, int start) {
+        for (int i = 0; i < FEATURES; i++) {
+            counts[start + i] = (byte) (key >>> (8 * i));
+        }
+    }
+
+    /**
+     * @return the mean squared error of the predicted results, followed by
+     * its gradient with respect to each weight, summed over the groups in
+     * parallel
+     */
+    private double[] errorAndGradient(double[] weights) {
+        int chunks = (groups + CHUNK - 1) / CHUNK;
+        double[] sums = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> sumChunk(weights, chunk * CHUNK,
+                        Math.min(groups, (chunk + 1) * CHUNK)))
+                .reduce(new double[FEATURES + 1], (a, b) -> {
+                    double[] sum = new double[FEATURES + 1];
+                    for (int i = 0; i <= FEATURES; i++) {
+                        sum[i] = a[i] + b[i];
+                    }
+                    return sum;
+                });
+        for (int i = 0; i <= FEATURES; i++) {
+            sums[i] /= positions;
+        }
+        return sums;
+    }
+
+    private double[] sumChunk(double[] weights, int start, int end) {
+        double[] sums = new double[FEATURES + 1];
+        for (int g = start; g < end; g++) {
+            int base = g * FEATURES;
+            double score = 0;
+            for (int i = 0; i < FEATURES; i++) {
+                score += weights[i] * features[base + i];
+            }
+            // The chance Red scores, a win counting 1 and a draw 1/2
+            double p = 1 / (1 + Math.exp(-steepness * score));
+            double n = redWins[g] + draws[g] + blackWins[g];
+            double points = redWins[g] + 0.5 * draws[g];
+            double squares = redWins[g] + 0.25 * draws[g];
+            sums[0] += squares - 2 * p * points + n * p * p;
+            // d/dw of the squared errors: -2 (points - n p) p (1 - p) K f
+            double slope = -2 * (points - n * p) * p * (1 - p) * steepness;
+            for (int i = 0; i < FEATURES; i++) {
+                sums[i + 1] += slope * features[base + i];
+            }
+        }
+        return sums;
+    }
+
+    private double error(double[] weights) {
+        return errorAndGradient(weights)[0];
+    }
+
+    private double error(int[] weights) {
+        return error(Arrays.stream(weights).asDoubleStream().toArray());
+    }
+
+    /**
+     * Finds the steepness of the curve that best fits the weights, by a
+     * golden section search over its logarithm
+     */
+    private void fitSteepness(double[] weights) {
+        double phi = (Math.sqrt(5) - 1) / 2;
+        double low = Math.log(1e-4);
+        double high = Math.log(1);
+        for (int i = 0; i < 60; i++) {
+            double a = high - phi * (high - low);
+            double b = low + phi * (high - low);
+            steepness = Math.exp(a);
+            double errorA = error(weights);
+            steepness = Math.exp(b);
+            double errorB = error(weights);
+            if (errorA < errorB) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        steepness = Math.exp((low + high) / 2);
+    }
+
+    /**
+     * Fits every weight but the man's by gradient descent with Adam
+     */
+    private double[] descend(double[] start, int iterations) {
+        double[] weights = start.clone();
+        double[] mean = new double[FEATURES];
+        double[] variance = new double[FEATURES];
+        double rate = 1.0;  // in hundredths of a man
+        double beta1 = 0.9;
+        double beta2 = 0.999;
+        for (int t = 1; t <= iterations; t++) {
+            double[] result = errorAndGradient(weights);
+            for (int i = 1; i < FEATURES; i++) {
+                double gradient = result[i + 1];
+                mean[i] = beta1 * mean[i] + (1 - beta1) * gradient;
+                variance[i] = beta2 * variance[i]
+                        + (1 - beta2) * gradient * gradient;
+                double m = mean[i] / (1 - Math.pow(beta1, t));
+                double v = variance[i] / (1 - Math.pow(beta2, t));
+                weights[i] -= rate * m / (Math.sqrt(v) + 1e-12);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Moves each weight but the man's up or down by one for as long as that
+     * lowers the error
+     * @return the error of the weights left
+     */
+    private double refine(int[] weights) {
+        double best = error(weights);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 1; i < FEATURES; i++) {
+                for (int delta : new int[] {1, -1}) {
+                    weights[i] += delta;
+                    double error = error(weights);
+                    if (error < best) {
+                        best = error;
+                        improved = true;
+                    } else {
+                        weights[i] -= delta;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(Evaluation.DEFAULT_FILE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int iterations = 2000;
+        int skipPlies = 8;
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--output":
+                        output = Paths.get(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[++i]);
+                        break;
+                    case "--skip-plies":
+                        skipPlies = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(
+                                    "Unknown option " + args[i]);
+                        }
+                        files.add(Paths.get(args[i]));
+                }
+            }
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("No games given");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ?
+                    "Missing value for " + args[args.length - 1] :
+                    e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long started = System.nanoTime();
+        EvaluationTuner tuner = new EvaluationTuner(
+                read(files, threads, skipPlies));
+        if (tuner.positions == 0) {
+            System.err.println("No quiet positions from finished games");
+            System.exit(1);
+        }
+        System.out.printf("%d positions in %d groups, read in %.1f s%n",
+                tuner.positions, tuner.groups,
+                (System.nanoTime() - started) / 1e9);
+
+        int[] current = Evaluation.weights();
+        double[] start = Arrays.stream(current).asDoubleStream().toArray();
+        tuner.fitSteepness(start);
+        double before = tuner.error(start);
+        System.out.printf("Steepness %.5f, error %.6f with the weights in "
+                + "use%n", tuner.steepness, before);
+
+        double[] fitted = tuner.descend(start, iterations);
+        int[] weights = new int[FEATURES];
+        for (int i = 0; i < FEATURES; i++) {
+            weights[i] = (int) Math.round(fitted[i]);
+        }
+        double after = tuner.refine(weights);
+        for (int i = 0; i < FEATURES; i++) {
+            System.out.printf("  %-9s %5d (was %d)%n", Evaluation.NAMES[i],
+                    weights[i], current[i]);
+        }
+        Evaluation.writeWeights(output, weights, String.format(
+                "Fitted to %d positions; mean squared error %.6f, was %.6f",
+                tuner.positions, after, before));
+        System.out.printf("Error %.6f, written to %s in %.1f s%n", after,
+                output, (System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,272 @@
+package checkers;
+
+/**
+ * Reads and writes positions in the FEN notation used by PDN (Portable
+ * Draughts Notation), for example the starting position:
+ *
+ *   B:W21,22,23,24,25,26,27,28,29,30,31,32:B1,2,3,4,5,6,7,8,9,10,11,12
+ *
+ * The first letter is the player to move, followed by the squares of each
+ * color's pieces; a K in front of a square marks a king and a range such as
+ * 1-12 may stand for several men. Squares are numbered 1 to 32, which is
+ * Board's square number plus one.
+ *
+ * PDN calls the player who moves first Black, and puts them on squares 1-12
+ * at the top of the board. Here that is Red, so PDN's B is Red and W is
+ * Black.
+ */
+public final class Fen {
+
+    private Fen() {
+    }
+
+    /**
+     * @param fen a position in FEN notation
+     * @return a new game set up in that position
+     * @exception IllegalArgumentException if fen cannot be read
+     */
+    public static GameState parse(String fen) {
+        GameState state = new GameState();
+        parse(fen, state);
+        return state;
+    }
+
+    /**
+     * Sets up a game in the position given in FEN notation.
+     * @param fen a position in FEN notation
+     * @param state the game to set up
+     * @exception IllegalArgumentException if fen cannot be read
+     */
+    public static void parse(String fen, GameState state) {
+        String text = fen.trim();
+        // Allow the [FEN "..."] tag form too
+        if (text.startsWith("[")) {
+            int open = text.indexOf('"');
+            int close = text.lastIndexOf('"');
+            if (open < 0 || close <= open) {
+                throw new IllegalArgumentException("Malformed FEN tag: " + fen);
+            }
+            text = text.substring(open + 1, close).trim();
+        }
+        if (text.endsWith(".")) {
+            text = text.substring(0, text.length() - 1);
+        }
+
+        String[] fields = text.split(":");
+        if (fields.length < 1 || fields[0].length() != 1) {
+            throw new IllegalArgumentException("Malformed FEN: " + fen);
+        }
+        Board board = state.board();
+        board.clear();
+        for (int i = 1; i < fields.length; i++) {
+            String field = fields[i].trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            char color = colorOf(field.charAt(0), fen);
+            String squares = field.substring(1);
+            if (squares.isEmpty()) {
+                continue;
+            }
+            for (String item : squares.split(",")) {
+                placePieces(board, item.trim(), color, fen);
+            }
+        }
+        state.setTurn(colorOf(fields[0].charAt(0), fen), -1);
+    }
+
+    /**
+     * @param state a game
+     * @return its position in FEN notation. A multiple jump in progress is
+     * not recorded; FEN has no way to say so.
+     */
+    public static String format(GameState state) {
+        Board board = state.board();
+        StringBuilder fen = new StringBuilder();
+        fen.append(state.sideToMove() == 'r' ? 'B' : 'W');
+        appendPieces(fen, board, 'b', 'W');
+        appendPieces(fen, board, 'r', 'B');
+        return fen.toString();
+    }
+
+    /**
+     * @param square a Board square number
+     * @return the PDN number of that square
+     */
+    public static int pdnSquare(int square) {
+        return square + 1;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the move in PDN notation, such as 9-13 or 9x18
+     */
+    public static String moveText(int move) {
+        return pdnSquare(Rules.from(move))
+                + (Rules.isJump(move) ? "x" : "-")
+                + pdnSquare(Rules.to(move));
+    }
+
+    /**
+     * @param hops the packed moves of one turn
+     * @param count how many of hops to use
+     * @return the turn in PDN notation, such as 11-15 or 9x18x27
+     */
+    public static String turnText(int[] hops, int count) {
+        StringBuilder text = new StringBuilder(moveText(hops[0]));
+        for (int i = 1; i < count; i++) {
+            text.append('x').append(pdnSquare(Rules.to(hops[i])));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads a whole turn in PDN notation, such as 11-15, 9x18x27 or, leaving
+     * out the squares jumped through, 9x27.
+     * @param state the position the turn is played from. It is not changed.
+     * @param text the turn
+     * @param hops receives the turn's packed moves, one per jump; room for
+     *             12 is always enough
+     * @return the number of moves in hops
+     * @exception IllegalArgumentException if text is not one legal turn
+     */
+    public static int parseTurn(GameState state, String text, int[] hops) {
+        String[] parts = text.trim().split("[-xX]");
+        int[] squares = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                squares[i] = Integer.parseInt(parts[i].trim()) - 1;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad move '" + text + "'");
+        }
+        if (squares.length < 2) {
+            throw new IllegalArgumentException("Bad move '" + text + "'");
+        }
+        int found = findTurns(state, squares, hops, new int[hops.length], 0);
+        if (found == 0) {
+            throw new IllegalArgumentException("Illegal move '" + text + "'");
+        }
+        if (found > 1) {
+            throw new IllegalArgumentException("Ambiguous move '" + text + "'");
+        }
+        int count = 0;
+        while (count < hops.length && hops[count] != -1) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tries every way of finishing the turn begun with the count moves in
+     * path and copies the ones that fit squares into hops, ended by -1 if
+     * there is room.
+     * @return the number of turns that fit
+     */
+    private static int findTurns(GameState state, int[] squares, int[] hops,
+            int[] path, int count) {
+        int[] moves = new int[Rules.MAX_MOVES];
+        int end = Rules.generateMoves(state, moves, 0);
+        int found = 0;
+        for (int i = 0; i < end; i++) {
+            if (count == 0 && Rules.from(moves[i]) != squares[0]) {
+                continue;
+            }
+            GameState child = new GameState();
+            child.copyFrom(state);
+            path[count] = moves[i];
+            if ((Rules.play(child, moves[i]) & Rules.TURN_OVER) == 0) {
+                found += findTurns(child, squares, hops, path, count + 1);
+            } else if (fits(path, count + 1, squares)) {
+                if (found == 0) {
+                    System.arraycopy(path, 0, hops, 0, count + 1);
+                    if (count + 1 < hops.length) {
+                        hops[count + 1] = -1;
+                    }
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return true if the squares of a turn match the written ones: the same
+     * start and end, with any squares written in between landed on in order
+     */
+    private static boolean fits(int[] path, int count, int[] squares) {
+        if (Rules.to(path[count - 1]) != squares[squares.length - 1]) {
+            return false;
+        }
+        int next = 1;
+        for (int i = 0; i < count - 1 && next < squares.length - 1; i++) {
+            if (Rules.to(path[i]) == squares[next]) {
+                next++;
+            }
+        }
+        return next == squares.length - 1;
+    }
+
+    private static char colorOf(char letter, String fen) {
+        switch (Character.toUpperCase(letter)) {
+            case 'B':
+                return 'r';
+            case 'W':
+                return 'b';
+            default:
+                throw new IllegalArgumentException(
+                        "FEN colors must be B or W: " + fen);
+        }
+    }
+
+    private static void placePieces(Board board, String item, char color,
+            String fen) {
+        boolean king = item.startsWith("K") || item.startsWith("k");
+        String numbers = king ? item.substring(1) : item;
+        int first, last;
+        try {
+            int dash = numbers.indexOf('-');
+            if (dash > 0) {
+                first = Integer.parseInt(numbers.substring(0, dash).trim());
+                last = Integer.parseInt(numbers.substring(dash + 1).trim());
+            } else {
+                first = Integer.parseInt(numbers.trim());
+                last = first;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad FEN square '" + item
+                    + "': " + fen);
+        }
+        if (first < 1 || last > 32 || first > last) {
+            throw new IllegalArgumentException("FEN squares must be 1 to 32: "
+                    + fen);
+        }
+        for (int number = first; number <= last; number++) {
+            int square = number - 1;
+            if (board.isOccupied(square)) {
+                throw new IllegalArgumentException("Square " + number
+                        + " is given twice: " + fen);
+            }
+            board.place(square, color, king);
+        }
+    }
+
+    private static void appendPieces(StringBuilder fen, Board board,
+            char color, char letter) {
+        fen.append(':').append(letter);
+        int pieces = board.pieces(color);
+        boolean first = true;
+        while (pieces != 0) {
+            int square = Integer.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (!first) {
+                fen.append(',');
+            }
+            if (board.isKing(square)) {
+                fen.append('K');
+            }
+            fen.append(pdnSquare(square));
+            first = false;
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package checkers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts any number of games at once for clients connecting over TCP. One
+ * thread does all the network input and output with a Selector, so an idle
+ * connection or game costs memory but no thread. Commands for a game run on a
+ * small pool of worker threads, one at a time and in the order they arrived,
+ * so a game never needs a lock and busy games do not hold up the rest.
+ *
+ * A game keeps only its three bitboards and whose turn it is between
+ * commands. Each worker thread has a GameState it loads a game into to check
+ * and play a move with Rules, the same rules the window and the computer
+ * player use.
+ *
+ * The protocol is one line of text per command and per reply. Squares and
+ * moves are in PDN notation and positions in FEN (see Fen); a position in the
+ * middle of a multiple jump is followed by the square the piece must jump
+ * from.
+ *
+ *   NEW                  create a game             GAME id
+ *   SIT id r|b           only you may move that side  SEAT id side
+ *   MOVE id move         play one jump or step, or a whole turn such as
+ *                        9x18x27                   STATE id fen [square]
+ *   SHOW id              the position              STATE id fen [square]
+ *   MOVES id             legal jumps or steps      MOVES id move...
+ *   WATCH id             be told of every move     WATCHING id
+ *   LEAVE id             give up seats and watching  LEFT id
+ *   END id               remove the game, if you are
+ *                        seated or no one is       ENDED id
+ *   STATS                server totals             STATS games=n connections=n
+ *   QUIT                 close the connection
+ *
+ * Players seated at a game and those watching it are sent "MOVED id move fen
+ * [square]" for every move someone else makes, and "OVER id result" when the
+ * game ends. Mistakes are answered with "ERR id message".
+ *
+ * Usage: java checkers.GameServer [port] [worker threads]
+ *
+ * The server only listens on the loopback address.
+ */
+public final class GameServer {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final int MAX_LINE = 1024;
+
+    // A client that stops reading is dropped once this much is queued for it
+    private static final int MAX_QUEUED_BYTES = 1 << 20;
+
+    // Each worker's position to load games into
+    private static final ThreadLocal<GameState> SCRATCH =
+            ThreadLocal.withInitial(GameState::new);
+
+    private final Map<Integer, ServerGame> games = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService workers;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    // Connections with replies waiting to be written
+    private final ConcurrentLinkedQueue<Connection> toFlush =
+            new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Starts listening. Call run() to start serving.
+     * @param port the port to listen on, or 0 for any free one
+     * @param threads the number of worker threads
+     * @exception IOException if the port cannot be opened
+     */
+    public GameServer(int port, int threads) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "game-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Serves clients on the calling thread until stop() is called.
+     * @exception IOException if the selector fails
+     */
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Connection flushing;
+                while ((flushing = toFlush.poll()) != null) {
+                    flushing.flushScheduled.set(false);
+                    if (flushing.key.isValid()) {
+                        flushing.key.interestOps(flushing.key.interestOps()
+                                | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> ready = selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+                    SelectionKey key = ready.next();
+                    ready.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Makes run() return. May be called from any thread.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * @return the number of games being hosted
+     */
+    public int games() {
+        return games.size();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        connections.incrementAndGet();
+    }
+
+    /**
+     * Carries out one command line from a connection. Runs on the selector
+     * thread, handing anything to do with one game to that game's queue.
+     */
+    private void command(Connection from, String line) {
+        String[] words = line.trim().split("\\s+");
+        String verb = words[0].toUpperCase();
+        switch (verb) {
+            case "":
+                return;
+            case "NEW": {
+                ServerGame game = new ServerGame(nextId.getAndIncrement());
+                games.put(game.id, game);
+                from.send("GAME " + game.id);
+                return;
+            }
+            case "STATS":
+                from.send("STATS games=" + games.size() + " connections="
+                        + connections.get());
+                return;
+            case "QUIT":
+                from.close();
+                return;
+            case "SIT":
+            case "MOVE":
+            case "SHOW":
+            case "MOVES":
+            case "WATCH":
+            case "LEAVE":
+            case "END":
+                break; // commands to a game
+            default:
+                from.send("ERR - unknown command " + verb);
+                return;
+        }
+
+        if (words.length < 2) {
+            from.send("ERR - " + verb + " needs a game number");
+            return;
+        }
+        ServerGame game;
+        try {
+            game = games.get(Integer.parseInt(words[1]));
+        } catch (NumberFormatException e) {
+            game = null;
+        }
+        if (game == null) {
+            from.send("ERR " + words[1] + " no such game");
+            return;
+        }
+        ServerGame target = game;
+        switch (verb) {
+            case "SIT":
+                target.execute(() -> target.sit(from, words));
+                break;
+            case "MOVE":
+                target.execute(() -> target.move(from, words));
+                break;
+            case "SHOW":
+                target.execute(() -> from.send("STATE " + target.id + " "
+                        + target.describe(SCRATCH.get())));
+                break;
+            case "MOVES":
+                target.execute(() -> target.listMoves(from));
+                break;
+            case "WATCH":
+                target.execute(() -> target.watch(from));
+                break;
+            case "LEAVE":
+                target.execute(() -> {
+                    target.leave(from);
+                    from.send("LEFT " + target.id);
+                });
+                break;
+            case "END":
+                target.execute(() -> target.end(from));
+                break;
+            default:
+                throw new IllegalStateException(verb); // checked above
+        }
+    }
+
+    /**
+     * One hosted game. Apart from execute(), its methods only run on its own
+     * queue, one at a time, so its fields need no locking.
+     */
+    private final class ServerGame {
+        final int id;
+
+        // The position
+        private int red;
+        private int black;
+        private int kings;
+        private char sideToMove = 'r';
+        private byte jumpingSquare = -1;
+        private boolean over;
+        private boolean ended; // removed, but commands may still be queued
+
+        // Who may move each side, if anyone has sat down there
+        private Connection redSeat;
+        private Connection blackSeat;
+        private List<Connection> watchers; // created when first needed
+
+        // Commands waiting to run, and whether a worker is running them
+        private ArrayDeque<Runnable> queue;
+        private boolean scheduled;
+
+        ServerGame(int id) {
+            this.id = id;
+            GameState start = new GameState();
+            save(start);
+        }
+
+        /**
+         * Queues a command, starting a worker on the queue if none is on it.
+         */
+        void execute(Runnable command) {
+            synchronized (this) {
+                if (queue == null) {
+                    queue = new ArrayDeque<>(2);
+                }
+                queue.add(command);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            workers.execute(this::drain);
+        }
+
+        /**
+         * Runs queued commands until there are none
+         */
+        private void drain() {
+            for (;;) {
+                Runnable command;
+                synchronized (this) {
+                    command = queue.poll();
+                    if (command == null) {
+                        scheduled = false;
+                        queue = null; // idle games keep no queue
+                        return;
+                    }
+                }
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Game " + id + ": " + e);
+                }
+            }
+        }
+
+        private void load(GameState state) {
+            state.board().set(red, black, kings);
+            state.setTurn(sideToMove, jumpingSquare);
+        }
+
+        private void save(GameState state) {
+            Board board = state.board();
+            red = board.pieces('r');
+            black = board.pieces('b');
+            kings = board.kings();
+            sideToMove = state.sideToMove();
+            jumpingSquare = (byte) state.jumpingSquare();
+        }
+
+        /**
+         * @return the position as FEN, followed by the square of a piece
+         * that has to keep jumping
+         */
+        String describe(GameState state) {
+            load(state);
+            String fen = Fen.format(state);
+            return (jumpingSquare < 0) ? fen
+                    : fen + " " + Fen.pdnSquare(jumpingSquare);
+        }
+
+        void sit(Connection from, String[] words) {
+            if (ended) {
+                from.send("ERR " + id + " no such game");
+                return;
+            }
+            char side = (words.length > 2) ? words[2].toLowerCase().charAt(0)
+                    : ' ';
+            if (side != 'r' && side != 'b') {
+                from.send("ERR " + id + " sit as r or b");
+                return;
+            }
+            Connection seated = (side == 'r') ? redSeat : blackSeat;
+            if (seated != null && seated != from) {
+                from.send("ERR " + id + " that seat is taken");
+                return;
+            }
+            if (side == 'r') {
+                redSeat = from;
+            } else {
+                blackSeat = from;
+            }
+            from.joined.add(this);
+            from.send("SEAT " + id + " " + side);
+        }
+
+        void move(Connection from, String[] words) {
+            if (words.length < 3) {
+                from.send("ERR " + id + " MOVE needs a move");
+                return;
+            }
+            if (over) {
+                from.send("ERR " + id + " the game is over");
+                return;
+            }
+            Connection seated = (sideToMove == 'r') ? redSeat : blackSeat;
+            if (seated != null && seated != from) {
+                from.send("ERR " + id + " it is not your turn");
+                return;
+            }
+
+            GameState state = SCRATCH.get();
+            load(state);
+            String text = words[2];
+            int[] hops = new int[12];
+            int count;
+            try {
+                count = parseMove(state, text, hops);
+            } catch (IllegalArgumentException e) {
+                from.send("ERR " + id + " " + e.getMessage());
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                Rules.play(state, hops[i]);
+            }
+            save(state);
+
+            String position = describe(state);
+            from.send("STATE " + id + " " + position);
+            tell(from, "MOVED " + id + " " + text + " " + position);
+            if (jumpingSquare < 0 && Rules.isGameOver(state)) {
+                over = true;
+                String result = (sideToMove == 'r') ? PdnGame.BLACK_WINS
+                        : PdnGame.RED_WINS;
+                tell(null, "OVER " + id + " " + result);
+            }
+        }
+
+        /**
+         * Reads either a single jump or step, which may be part of a
+         * multiple jump, or a whole turn.
+         * @return the number of moves put in hops
+         * @exception IllegalArgumentException if it is not legal
+         */
+        private int parseMove(GameState state, String text, int[] hops) {
+            String[] squares = text.split("[-xX]");
+            if (squares.length == 2) {
+                try {
+                    int from = Integer.parseInt(squares[0]) - 1;
+                    int to = Integer.parseInt(squares[1]) - 1;
+                    if (from >= 0 && from < 32 && to >= 0 && to < 32
+                            && Rules.isLegal(state, from, to)) {
+                        hops[0] = Rules.move(from, to);
+                        return 1;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad move '" + text + "'");
+                }
+            }
+            return Fen.parseTurn(state, text, hops);
+        }
+
+        void listMoves(Connection from) {
+            GameState state = SCRATCH.get();
+            load(state);
+            int[] moves = new int[Rules.MAX_MOVES];
+            int count = over ? 0 : Rules.generateMoves(state, moves, 0);
+            StringBuilder reply = new StringBuilder("MOVES ").append(id);
+            for (int i = 0; i < count; i++) {
+                reply.append(' ').append(Fen.moveText(moves[i]));
+            }
+            from.send(reply.toString());
+        }
+
+        void watch(Connection from) {
+            if (ended) {
+                from.send("ERR " + id + " no such game");
+                return;
+            }
+            if (watchers == null) {
+                watchers = new ArrayList<>(2);
+            }
+            if (!watchers.contains(from)) {
+                watchers.add(from);
+            }
+            from.joined.add(this);
+            from.send("WATCHING " + id);
+        }
+
+        void leave(Connection from) {
+            if (redSeat == from) {
+                redSeat = null;
+            }
+            if (blackSeat == from) {
+                blackSeat = null;
+            }
+            if (watchers != null) {
+                watchers.remove(from);
+                if (watchers.isEmpty()) {
+                    watchers = null;
+                }
+            }
+            from.joined.remove(this);
+        }
+
+        /**
+         * Removes the game, if from is seated at it or no one is, and lets
+         * go of everyone seated at or watching it.
+         */
+        void end(Connection from) {
+            if (ended) {
+                from.send("ERR " + id + " no such game");
+                return;
+            }
+            boolean seated = redSeat == from || blackSeat == from;
+            if (!seated && (redSeat != null || blackSeat != null)) {
+                from.send("ERR " + id + " only a seated player may end it");
+                return;
+            }
+            ended = true;
+            over = true;
+            games.remove(id);
+            tell(from, "ENDED " + id);
+            from.send("ENDED " + id);
+            if (redSeat != null) {
+                redSeat.joined.remove(this);
+            }
+            if (blackSeat != null) {
+                blackSeat.joined.remove(this);
+            }
+            if (watchers != null) {
+                for (Connection watcher : watchers) {
+                    watcher.joined.remove(this);
+                }
+            }
+            redSeat = null;
+            blackSeat = null;
+            watchers = null;
+        }
+
+        /**
+         * Sends a message to everyone seated at or watching the game, except
+         * the one who caused it.
+         */
+        void tell(Connection except, String message) {
+            if (redSeat != null && redSeat != except) {
+                redSeat.send(message);
+            }
+            if (blackSeat != null && blackSeat != except
+                    && blackSeat != redSeat) {
+                blackSeat.send(message);
+            }
+            if (watchers != null) {
+                for (Connection watcher : watchers) {
+                    if (watcher != except && watcher != redSeat
+                            && watcher != blackSeat) {
+                        watcher.send(message);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One client. Reads and writes happen on the selector thread; send() may
+     * be called from any thread.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        final SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        private final ConcurrentLinkedQueue<ByteBuffer> output =
+                new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queuedBytes = new AtomicInteger();
+        final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        // Games this client sits at or watches, to leave when it goes
+        final Set<ServerGame> joined = ConcurrentHashMap.newKeySet();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void send(String message) {
+            if (closed.get()) {
+                return;
+            }
+            byte[] bytes = (message + "\n").getBytes(StandardCharsets.US_ASCII);
+            if (queuedBytes.addAndGet(bytes.length) > MAX_QUEUED_BYTES) {
+                close();
+                return;
+            }
+            output.add(ByteBuffer.wrap(bytes));
+            if (flushScheduled.compareAndSet(false, true)) {
+                toFlush.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void read() throws IOException {
+            if (channel.read(input) < 0) {
+                close();
+                return;
+            }
+            input.flip();
+            int start = input.position();
+            for (int i = start; i < input.limit(); i++) {
+                if (input.get(i) == '\n') {
+                    String line = new String(input.array(), start, i - start,
+                            StandardCharsets.US_ASCII);
+                    command(this, line);
+                    start = i + 1;
+                }
+            }
+            input.position(start);
+            input.compact();
+            if (!input.hasRemaining()) {
+                send("ERR - line too long");
+                input.clear();
+            }
+        }
+
+        void write() throws IOException {
+            ByteBuffer next;
+            while ((next = output.peek()) != null) {
+                int written = channel.write(next);
+                queuedBytes.addAndGet(-written);
+                if (next.hasRemaining()) {
+                    return; // the socket is full; wait until it is writable
+                }
+                output.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // A reply added after the queue looked empty schedules its own flush
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            connections.decrementAndGet();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing more to do with it
+            }
+            for (ServerGame game : joined) {
+                game.execute(() -> game.leave(this));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        Metrics.registerMBean();
+        GameServer server = new GameServer(port, threads);
+        System.out.println("Serving games on 127.0.0.1:" + server.port());
+        server.run();
+    }
+}
@@ -0,0 +1,88 @@
+package checkers;
+
+/**
+ * Everything about a game of checkers except how it is drawn: the position,
+ * whose turn it is and whether that player is partway through a multiple
+ * jump. Rules reads and changes a GameState. Nothing here touches AWT or
+ * Swing, so games can be played without a display and off the event dispatch
+ * thread.
+ */
+public final class GameState {
+
+    private final Board board = new Board();
+    private char sideToMove = 'r';
+    private int jumpingSquare = -1; // -1 unless a piece must keep jumping
+
+    /**
+     * Creates a game set up in the starting position.
+     */
+    public GameState() {
+        reset();
+    }
+
+    /**
+     * Sets the pieces up in the starting position with Red to move.
+     */
+    public void reset() {
+        board.clear();
+        // Red fills the first three rows, Black the last three
+        for (int square = 0; square < 12; square++) {
+            board.place(square, 'r', false);
+        }
+        for (int square = 20; square < 32; square++) {
+            board.place(square, 'b', false);
+        }
+        sideToMove = 'r';
+        jumpingSquare = -1;
+    }
+
+    /**
+     * Makes this game a copy of another one, so a search or a background
+     * thread can work on it without touching the original.
+     * @param other the game to copy
+     */
+    public void copyFrom(GameState other) {
+        board.copyFrom(other.board);
+        sideToMove = other.sideToMove;
+        jumpingSquare = other.jumpingSquare;
+    }
+
+    public Board board() {
+        return board;
+    }
+
+    /**
+     * @return a 64-bit Zobrist key identifying this position, including whose
+     * turn it is and any multiple jump in progress. Equal positions always
+     * have equal keys; different ones almost never do.
+     */
+    public long key() {
+        return board.hash() ^ Zobrist.turn(sideToMove, jumpingSquare);
+    }
+
+    /**
+     * @return 'r' or 'b'
+     */
+    public char sideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * @return the square of the piece that has just jumped and must jump
+     * again, or -1 if the player to move may choose any piece
+     */
+    public int jumpingSquare() {
+        return jumpingSquare;
+    }
+
+    /**
+     * Hands the turn to a player.
+     * @param side 'r' or 'b'
+     * @param jumpingSquare square of the piece that must continue jumping,
+     *                      or -1
+     */
+    public void setTurn(char side, int jumpingSquare) {
+        this.sideToMove = side;
+        this.jumpingSquare = jumpingSquare;
+    }
+}
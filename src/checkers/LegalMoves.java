@@ -0,0 +1,86 @@
+package checkers;
+
+import java.util.Arrays;
+
+/**
+ * Every legal move of the player to move in one position, generated once so
+ * that the questions the window asks on every click (may this piece move,
+ * where to, must something jump, is the game over) are answered by looking
+ * them up. See MoveCache.
+ */
+public final class LegalMoves {
+
+    private final int[] moves;
+    private final int[] targets = new int[32]; // by square moved from
+    private final int movable;
+    private final boolean jumps;
+
+    /**
+     * Generates the legal moves of the player to move.
+     */
+    public LegalMoves(GameState state) {
+        int[] buffer = new int[Rules.MAX_MOVES];
+        int count = Rules.generateMoves(state, buffer, 0);
+        Metrics.movesGenerated(count);
+        moves = Arrays.copyOf(buffer, count);
+        int pieces = 0;
+        for (int move : moves) {
+            targets[Rules.from(move)] |= 1 << Rules.to(move);
+            pieces |= 1 << Rules.from(move);
+        }
+        movable = pieces;
+        // Jumps are mandatory, so either every move is a jump or none is
+        jumps = count > 0 && Rules.isJump(moves[0]);
+    }
+
+    /**
+     * @return the number of legal moves
+     */
+    public int count() {
+        return moves.length;
+    }
+
+    /**
+     * @param index from 0 to count() - 1
+     * @return the packed move
+     */
+    public int move(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @return true if the player to move has no legal move and so has lost
+     */
+    public boolean isGameOver() {
+        return moves.length == 0;
+    }
+
+    /**
+     * @return true if the player to move has to jump
+     */
+    public boolean mustJump() {
+        return jumps;
+    }
+
+    /**
+     * @return mask of the pieces that may move
+     */
+    public int movable() {
+        return movable;
+    }
+
+    /**
+     * @param square the square of a piece
+     * @return mask of the squares it may move to, as Rules.targets() gives
+     */
+    public int targets(int square) {
+        return (square < 0 || square > 31) ? 0 : targets[square];
+    }
+
+    /**
+     * @return true if the piece on from may move to to
+     */
+    public boolean isLegal(int from, int to) {
+        return to >= 0 && to < 32 && (targets(from) & (1 << to)) != 0;
+    }
+}
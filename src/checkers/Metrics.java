@@ -0,0 +1,368 @@
+package checkers;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * Counts where the engine and the window spend their time: moves generated,
+ * positions searched and how fast, how often the transposition table had
+ * the answer, and how long the window takes over each click and each start
+ * of a turn.
+ *
+ * Counting is switched on with the checkers.metrics system property
+ * (-Dcheckers.metrics=true). The setting is read once, into a constant, so
+ * with it off the JIT compiles the counting out of the search altogether.
+ * The totals can be read with snapshot() or over JMX, as the MBean
+ * "checkers:type=Metrics" (see MetricsMXBean).
+ *
+ * Each search and each click or start of turn is also a Java Flight
+ * Recorder event (checkers.Search and checkers.Turn), recorded whether or
+ * not counting is on whenever a recording with them enabled is running:
+ *
+ *   java -XX:StartFlightRecording=filename=game.jfr -jar checkers.jar
+ */
+public final class Metrics {
+
+    /** Whether counting is on, as set by the checkers.metrics property */
+    public static final boolean ENABLED = Boolean.getBoolean("checkers.metrics");
+
+    /** The name the MBean is registered under */
+    public static final String OBJECT_NAME = "checkers:type=Metrics";
+
+    private static final LongAdder MOVES_GENERATED = new LongAdder();
+    private static final LongAdder NODES = new LongAdder();
+    private static final LongAdder SEARCHES = new LongAdder();
+    private static final LongAdder SEARCH_NANOS = new LongAdder();
+    private static final LongAdder TABLE_PROBES = new LongAdder();
+    private static final LongAdder TABLE_HITS = new LongAdder();
+    private static final LongAdder TURNS = new LongAdder();
+    private static final LongAdder TURN_NANOS = new LongAdder();
+    private static final LongAccumulator TURN_MAX_NANOS =
+            new LongAccumulator(Math::max, 0);
+    private static final AtomicLong STARTED = new AtomicLong(System.nanoTime());
+
+    private static boolean registered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers the MBean with the platform MBean server, if counting is on
+     * and it is not registered already.
+     */
+    public static synchronized void registerMBean() {
+        if (!ENABLED || registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new Bean(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Cannot register metrics MBean: " + e);
+        }
+    }
+
+    /**
+     * Records a finished search. Called by Search.
+     * @param event the search's flight recorder event, begun when it started
+     * @param nanos how long it took
+     */
+    static void searchDone(SearchEvent event, long nanos, int move, int depth,
+                           long nodes, long movesGenerated, long probes,
+                           long hits) {
+        if (ENABLED) {
+            SEARCHES.increment();
+            SEARCH_NANOS.add(nanos);
+            NODES.add(nodes);
+            MOVES_GENERATED.add(movesGenerated);
+            TABLE_PROBES.add(probes);
+            TABLE_HITS.add(hits);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.move = (move == -1) ? null : Fen.moveText(move);
+            event.depth = depth;
+            event.nodes = nodes;
+            event.nodesPerSecond = (nanos > 0) ? nodes * 1000000000L / nanos : 0;
+            // The table is only watched while counting is on
+            event.tableHitRate = !ENABLED ? Double.NaN :
+                    (probes > 0) ? (double) hits / probes : 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * Counts moves generated outside a search, such as by the window
+     */
+    static void movesGenerated(int count) {
+        if (ENABLED) {
+            MOVES_GENERATED.add(count);
+        }
+    }
+
+    /**
+     * Starts timing something the window does for a turn.
+     * @param action what it is doing, such as "click"
+     * @return the event to pass to endTurn()
+     */
+    static TurnEvent beginTurn(String action) {
+        TurnEvent event = new TurnEvent();
+        event.action = action;
+        event.begin();
+        if (ENABLED) {
+            event.started = System.nanoTime();
+        }
+        return event;
+    }
+
+    /**
+     * Finishes timing what beginTurn() started.
+     */
+    static void endTurn(TurnEvent event) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - event.started;
+            TURNS.increment();
+            TURN_NANOS.add(nanos);
+            TURN_MAX_NANOS.accumulate(nanos);
+        }
+        event.commit();
+    }
+
+    /**
+     * @return the totals counted since the program started or reset() was
+     * last called. All zero when counting is off.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Sets every count back to zero, and clears the input latencies.
+     */
+    public static void reset() {
+        EdtWatchdog watchdog = EdtWatchdog.installed();
+        if (watchdog != null) {
+            watchdog.inputLatency().reset();
+        }
+        for (LongAdder adder : new LongAdder[] {MOVES_GENERATED, NODES,
+                SEARCHES, SEARCH_NANOS, TABLE_PROBES, TABLE_HITS, TURNS,
+                TURN_NANOS}) {
+            adder.reset();
+        }
+        TURN_MAX_NANOS.reset();
+        STARTED.set(System.nanoTime());
+    }
+
+    /**
+     * The counts at one moment. Each is read separately, so one taken while
+     * a search is finishing may be off by that search.
+     */
+    public static final class Snapshot {
+        private final long movesGenerated = MOVES_GENERATED.sum();
+        private final long nodes = NODES.sum();
+        private final long searches = SEARCHES.sum();
+        private final long searchNanos = SEARCH_NANOS.sum();
+        private final long tableProbes = TABLE_PROBES.sum();
+        private final long tableHits = TABLE_HITS.sum();
+        private final long turns = TURNS.sum();
+        private final long turnNanos = TURN_NANOS.sum();
+        private final long turnMaxNanos = TURN_MAX_NANOS.get();
+        private final long elapsedNanos = System.nanoTime() - STARTED.get();
+
+        private Snapshot() {
+        }
+
+        public long movesGenerated() {
+            return movesGenerated;
+        }
+
+        /**
+         * @return the positions visited by finished searches
+         */
+        public long nodes() {
+            return nodes;
+        }
+
+        public long searches() {
+            return searches;
+        }
+
+        /**
+         * @return the time spent searching, added up over every thread
+         */
+        public long searchNanos() {
+            return searchNanos;
+        }
+
+        /**
+         * @return positions searched a second by one thread
+         */
+        public long nodesPerSecond() {
+            return (searchNanos > 0) ? nodes * 1000000000L / searchNanos : 0;
+        }
+
+        public long tableProbes() {
+            return tableProbes;
+        }
+
+        public long tableHits() {
+            return tableHits;
+        }
+
+        /**
+         * @return the share of table probes that found the position, from
+         * 0 to 1
+         */
+        public double tableHitRate() {
+            return (tableProbes > 0) ? (double) tableHits / tableProbes : 0;
+        }
+
+        /**
+         * @return the number of clicks and starts of turns timed
+         */
+        public long turns() {
+            return turns;
+        }
+
+        public double meanTurnMillis() {
+            return (turns > 0) ? turnNanos / 1e6 / turns : 0;
+        }
+
+        public double maxTurnMillis() {
+            return turnMaxNanos / 1e6;
+        }
+
+        /**
+         * @return the time since counting started or was reset
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d searches, %d nodes (%d/s a thread), "
+                    + "%d moves generated, table hits %.1f%%, %d turns "
+                    + "(mean %.2f ms, max %.2f ms)", searches, nodes,
+                    nodesPerSecond(), movesGenerated, 100 * tableHitRate(),
+                    turns, meanTurnMillis(), maxTurnMillis());
+        }
+    }
+
+    /**
+     * What JMX clients see
+     */
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public long getMovesGenerated() {
+            return MOVES_GENERATED.sum();
+        }
+
+        @Override
+        public long getNodesSearched() {
+            return NODES.sum();
+        }
+
+        @Override
+        public long getSearches() {
+            return SEARCHES.sum();
+        }
+
+        @Override
+        public long getNodesPerSecond() {
+            return snapshot().nodesPerSecond();
+        }
+
+        @Override
+        public double getTableHitRate() {
+            return snapshot().tableHitRate();
+        }
+
+        @Override
+        public long getTurns() {
+            return TURNS.sum();
+        }
+
+        @Override
+        public double getMeanTurnMillis() {
+            return snapshot().meanTurnMillis();
+        }
+
+        @Override
+        public double getMaxTurnMillis() {
+            return snapshot().maxTurnMillis();
+        }
+
+        @Override
+        public double getInputLatencyMedianMillis() {
+            EdtWatchdog watchdog = EdtWatchdog.installed();
+            return (watchdog == null) ? 0 :
+                    watchdog.inputLatency().percentileNanos(50) / 1e6;
+        }
+
+        @Override
+        public double getInputLatency99thMillis() {
+            EdtWatchdog watchdog = EdtWatchdog.installed();
+            return (watchdog == null) ? 0 :
+                    watchdog.inputLatency().percentileNanos(99) / 1e6;
+        }
+
+        @Override
+        public long getEdtStalls() {
+            EdtWatchdog watchdog = EdtWatchdog.installed();
+            return (watchdog == null) ? 0 : watchdog.stalls();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    @Name("checkers.Search")
+    @Label("Search")
+    @Category("Checkers")
+    @Description("One search for a move")
+    @StackTrace(false)
+    static final class SearchEvent extends Event {
+        @Label("Move")
+        String move;
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Nodes per Second")
+        long nodesPerSecond;
+
+        @Label("Table Hit Rate")
+        @Percentage
+        double tableHitRate;
+    }
+
+    @Name("checkers.Turn")
+    @Label("Turn")
+    @Category("Checkers")
+    @Description("The window handling a click or the start of a turn")
+    @StackTrace(false)
+    static final class TurnEvent extends Event {
+        @Label("Action")
+        String action;
+
+        transient long started;
+    }
+}
@@ -0,0 +1,42 @@
+package checkers;
+
+/**
+ * The counts Metrics keeps, as JMX attributes. Registered as
+ * "checkers:type=Metrics" when the checkers.metrics property is true.
+ */
+public interface MetricsMXBean {
+
+    long getMovesGenerated();
+
+    long getNodesSearched();
+
+    long getSearches();
+
+    /** Positions searched a second by one thread */
+    long getNodesPerSecond();
+
+    /** The share of transposition table probes that hit, from 0 to 1 */
+    double getTableHitRate();
+
+    /** The number of clicks and starts of turns the window timed */
+    long getTurns();
+
+    double getMeanTurnMillis();
+
+    double getMaxTurnMillis();
+
+    /**
+     * The median time from a click or key press to the window being
+     * repainted, or 0 if the EdtWatchdog is not installed
+     */
+    double getInputLatencyMedianMillis();
+
+    /** The 99th percentile of the same */
+    double getInputLatency99thMillis();
+
+    /** How many times the event dispatch thread was reported busy */
+    long getEdtStalls();
+
+    /** Sets every count back to zero */
+    void reset();
+}
@@ -0,0 +1,85 @@
+package checkers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The legal moves of the last few positions seen, by position key, so each
+ * position's moves are generated once however many clicks it takes to play
+ * one, and going back and forth with undo finds them already there. Only
+ * the most recently used positions are kept. Not for use by several threads
+ * at once.
+ */
+public final class MoveCache {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Recent recent;
+    private long hits;
+    private long misses;
+
+    public MoveCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of positions to keep
+     */
+    public MoveCache(int capacity) {
+        recent = new Recent(capacity);
+    }
+
+    /**
+     * @return the legal moves of the player to move, generated only if the
+     * position is not in the cache
+     */
+    public LegalMoves get(GameState state) {
+        long key = state.key();
+        LegalMoves moves = recent.get(key);
+        if (moves != null) {
+            hits++;
+            return moves;
+        }
+        misses++;
+        moves = new LegalMoves(state);
+        recent.put(key, moves);
+        return moves;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to generate the moves
+     */
+    public long misses() {
+        return misses;
+    }
+
+    public void clear() {
+        recent.clear();
+    }
+
+    /**
+     * The positions in order of use, dropping the least recently used once
+     * there are too many
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Recent extends LinkedHashMap<Long, LegalMoves> {
+        private final int capacity;
+
+        Recent(int capacity) {
+            super(2 * capacity, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LegalMoves> eldest) {
+            return size() > capacity;
+        }
+    }
+}
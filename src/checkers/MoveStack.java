@@ -0,0 +1,79 @@
+package checkers;
+
+import java.util.Arrays;
+
+/**
+ * A stack of ints, such as packed moves or the undo records Rules.make()
+ * returns, kept in an array that grows as needed so pushing a move allocates
+ * nothing once the stack is big enough.
+ */
+public final class MoveStack {
+
+    private int[] entries;
+    private int size;
+
+    public MoveStack() {
+        this(64);
+    }
+
+    /**
+     * @param capacity the number of entries to make room for at first
+     */
+    public MoveStack(int capacity) {
+        entries = new int[Math.max(capacity, 1)];
+    }
+
+    public void push(int entry) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+        }
+        entries[size++] = entry;
+    }
+
+    /**
+     * @return the entry on top, which is removed
+     * @exception IllegalStateException if the stack is empty
+     */
+    public int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("The stack is empty.");
+        }
+        return entries[--size];
+    }
+
+    /**
+     * @return the entry on top
+     * @exception IllegalStateException if the stack is empty
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new IllegalStateException("The stack is empty.");
+        }
+        return entries[size - 1];
+    }
+
+    /**
+     * @param index 0 for the entry pushed first
+     * @return the entry
+     * @exception IndexOutOfBoundsException unless 0 <= index < size()
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index
+                    + " out of bounds for size " + size);
+        }
+        return entries[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
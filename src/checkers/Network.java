@@ -0,0 +1,224 @@
+package checkers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The weights of a small neural network that evaluates positions, in the
+ * manner of the NNUE networks chess engines use. Its inputs are the 128
+ * piece-square features, one for each kind of piece (in Zobrist's order)
+ * on each square, which a move changes only a few of. The first layer is a
+ * sum of one column of weights for each piece on the board, the
+ * accumulator, so a search keeps it up to date by adding and taking away
+ * the columns of the pieces a move moves, captures or crowns rather than
+ * working it out again (see NeuralEvaluator). The accumulator goes through
+ * a clipped ReLU, clamped to 0..ACTIVATION_MAX, and a weighted sum of the
+ * result is the score for Red, in OUTPUT_SCALE parts of a hundredth of a
+ * man.
+ *
+ * Everything is in ints, so a network gives the same scores on every
+ * machine, vectorized or not. fromEvaluation() builds the network that
+ * gives exactly the scores Evaluation does, a starting point for training;
+ * one trained elsewhere is read from a file in the format write() uses:
+ *
+ *   int magic "CKNN", int version, int hidden units (HIDDEN),
+ *   int[INPUTS * HIDDEN] input weights, one column of HIDDEN a feature,
+ *   int[HIDDEN] hidden biases, int[HIDDEN] output weights, int output bias
+ *
+ * all big-endian. A network can be shared by any number of searches.
+ */
+public final class Network {
+
+    /** Where the game looks for a trained network */
+    public static final String DEFAULT_FILE = "network.cknn";
+
+    /** Piece-square features: four kinds of piece on 32 squares */
+    public static final int INPUTS = 4 * 32;
+
+    /** Hidden units, a multiple of the widest vector */
+    public static final int HIDDEN = 64;
+
+    /** The most a hidden unit's output can be */
+    public static final int ACTIVATION_MAX = 255;
+
+    /** Output units to a hundredth of a man */
+    public static final int OUTPUT_SCALE = 64;
+
+    private static final int MAGIC = 0x434B4E4E;
+    private static final int VERSION = 1;
+
+    final int[] inputWeights;   // the column of feature f starts at f * HIDDEN
+    final int[] hiddenBiases;
+    final int[] outputWeights;
+    final int outputBias;
+
+    private Network(int[] inputWeights, int[] hiddenBiases,
+                    int[] outputWeights, int outputBias) {
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * @return the feature of a kind of piece on a square
+     */
+    static int feature(int type, int square) {
+        return 32 * type + square;
+    }
+
+    /**
+     * Builds the network that scores every position exactly as Evaluation
+     * does with the weights it loaded. The evaluation is a sum of a value
+     * for each piece on its square, so one hidden unit for each color on
+     * each square passes the value of whatever piece is there to the output,
+     * Red's added and Black's taken away. Every unit has the same bias, to
+     * keep any value below zero out of the clamp, and the biases cancel out.
+     * @exception IllegalStateException if a piece is worth too much for a
+     * hidden unit to pass on
+     */
+    public static Network fromEvaluation() {
+        int[] values = new int[INPUTS];
+        int[] counts = new int[Evaluation.NAMES.length];
+        int[] weights = Evaluation.weights();
+        Board board = new Board();
+        int lowest = 0;
+        int highest = 0;
+        for (int type = 0; type < 4; type++) {
+            for (int square = 0; square < 32; square++) {
+                int bit = 1 << square;
+                boolean red = type == Zobrist.RED_MAN
+                        || type == Zobrist.RED_KING;
+                boolean king = type == Zobrist.RED_KING
+                        || type == Zobrist.BLACK_KING;
+                board.set(red ? bit : 0, red ? 0 : bit, king ? bit : 0);
+                Evaluation.features(board, counts);
+                int value = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    value += weights[i] * counts[i];
+                }
+                // What the piece is worth to its own side
+                values[feature(type, square)] = red ? value : -value;
+                lowest = Math.min(lowest, red ? value : -value);
+                highest = Math.max(highest, red ? value : -value);
+            }
+        }
+        int bias = -lowest;
+        if (highest + bias > ACTIVATION_MAX) {
+            throw new IllegalStateException("The evaluation's pieces are "
+                    + "worth more than a hidden unit can pass on");
+        }
+
+        int[] inputWeights = new int[INPUTS * HIDDEN];
+        int[] hiddenBiases = new int[HIDDEN];
+        int[] outputWeights = new int[HIDDEN];
+        for (int type = 0; type < 4; type++) {
+            boolean red = type == Zobrist.RED_MAN
+                    || type == Zobrist.RED_KING;
+            for (int square = 0; square < 32; square++) {
+                int unit = red ? square : 32 + square;
+                int f = feature(type, square);
+                inputWeights[f * HIDDEN + unit] = values[f];
+            }
+        }
+        for (int unit = 0; unit < HIDDEN; unit++) {
+            hiddenBiases[unit] = bias;
+            outputWeights[unit] = (unit < 32) ? OUTPUT_SCALE : -OUTPUT_SCALE;
+        }
+        return new Network(inputWeights, hiddenBiases, outputWeights, 0);
+    }
+
+    /**
+     * @exception IOException if the file cannot be read or is not a network
+     * of this size
+     */
+    public static Network read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a network.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported network version " + version);
+            }
+            int hidden = in.readInt();
+            if (hidden != HIDDEN) {
+                throw new IOException("The network has " + hidden
+                        + " hidden units, not " + HIDDEN);
+            }
+            int[] inputWeights = readInts(in, INPUTS * HIDDEN);
+            int[] hiddenBiases = readInts(in, HIDDEN);
+            int[] outputWeights = readInts(in, HIDDEN);
+            return new Network(inputWeights, hiddenBiases, outputWeights,
+                    in.readInt());
+        } catch (EOFException e) {
+            throw new IOException("The network is cut short.");
+        }
+    }
+
+    /**
+     * @return the network at path, or null if there is no file there or it
+     * cannot be read
+     */
+    public static Network readIfPresent(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return read(path);
+        } catch (IOException e) {
+            System.err.println("Cannot read network " + path + ": "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(HIDDEN);
+            writeInts(out, inputWeights);
+            writeInts(out, hiddenBiases);
+            writeInts(out, outputWeights);
+            out.writeInt(outputBias);
+        }
+    }
+
+    /**
+     * Writes the network built from the evaluation, to start training from:
+     *
+     *   java checkers.Network [file]
+     */
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get((args.length > 0) ? args[0] : DEFAULT_FILE);
+        fromEvaluation().write(output);
+        System.out.println("Network built from the evaluation written to "
+                + output);
+    }
+
+    private static int[] readInts(DataInputStream in, int count)
+            throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values)
+            throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+}
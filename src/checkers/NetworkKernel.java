@@ -0,0 +1,97 @@
+package checkers;
+
+/**
+ * The arithmetic of a Network, on plain ints one at a time. VectorKernel
+ * does the same with the Vector API, several hidden units at once, when
+ * the jdk.incubator.vector module has been added to the JVM
+ * (--add-modules jdk.incubator.vector); get() picks it when it can. Both
+ * give exactly the same results.
+ */
+class NetworkKernel {
+
+    private static final NetworkKernel BEST = load();
+
+    /**
+     * @return the fastest kernel this JVM can run
+     */
+    static NetworkKernel get() {
+        return BEST;
+    }
+
+    /**
+     * @return the vectorized kernel if the incubator module is present and
+     * the checkers.vectorNetwork property is not false, otherwise this one
+     */
+    private static NetworkKernel load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                && !"false".equals(System.getProperty("checkers.vectorNetwork"))) {
+            try {
+                return (NetworkKernel) Class.forName("checkers.VectorKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Cannot vectorize the network: " + e);
+            }
+        }
+        return new NetworkKernel();
+    }
+
+    /**
+     * @return a name for reports, such as "scalar"
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Sets an accumulator to the biases plus the columns of some features.
+     */
+    void refresh(int[] accumulator, Network network, int[] features,
+                 int count) {
+        int[] weights = network.inputWeights;
+        System.arraycopy(network.hiddenBiases, 0, accumulator, 0,
+                Network.HIDDEN);
+        for (int i = 0; i < count; i++) {
+            int column = features[i] * Network.HIDDEN;
+            for (int unit = 0; unit < Network.HIDDEN; unit++) {
+                accumulator[unit] += weights[column + unit];
+            }
+        }
+    }
+
+    /**
+     * Sets an accumulator to another with the columns of some features taken
+     * away and those of others added.
+     */
+    void update(int[] from, int[] to, Network network, int[] removed,
+                int removedCount, int[] added, int addedCount) {
+        int[] weights = network.inputWeights;
+        System.arraycopy(from, 0, to, 0, Network.HIDDEN);
+        for (int i = 0; i < removedCount; i++) {
+            int column = removed[i] * Network.HIDDEN;
+            for (int unit = 0; unit < Network.HIDDEN; unit++) {
+                to[unit] -= weights[column + unit];
+            }
+        }
+        for (int i = 0; i < addedCount; i++) {
+            int column = added[i] * Network.HIDDEN;
+            for (int unit = 0; unit < Network.HIDDEN; unit++) {
+                to[unit] += weights[column + unit];
+            }
+        }
+    }
+
+    /**
+     * @return the output bias plus the clamped accumulator weighted by the
+     * output weights, in OUTPUT_SCALE parts of a hundredth of a man
+     */
+    int output(int[] accumulator, Network network) {
+        int[] weights = network.outputWeights;
+        int sum = network.outputBias;
+        for (int unit = 0; unit < Network.HIDDEN; unit++) {
+            int activation = Math.min(Math.max(accumulator[unit], 0),
+                    Network.ACTIVATION_MAX);
+            sum += activation * weights[unit];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,128 @@
+package checkers;
+
+/**
+ * Evaluates the positions of a search with a Network, keeping an
+ * accumulator for each ply of the line being searched. When a position is
+ * replaced its accumulator is only marked stale; it is brought up to date
+ * when a position at or below that ply is evaluated, from the accumulator
+ * of the ply above, by adding and taking away the columns of the pieces
+ * that differ between the two positions. A move changes two to four piece
+ * features, so that costs a few vector additions where working the
+ * accumulator out again would take one for every piece on the board, and
+ * positions that are never evaluated cost nothing.
+ *
+ * Belongs to one search, on one thread.
+ */
+final class NeuralEvaluator {
+
+    private final Network network;
+    private final NetworkKernel kernel;
+    private final int[][] accumulators;
+    // Accumulators from ply 0 to this one match their positions
+    private int current = -1;
+
+    private final int[] removed = new int[Network.INPUTS];
+    private final int[] added = new int[Network.INPUTS];
+
+    /**
+     * @param plies the number of positions in the deepest line searched
+     */
+    NeuralEvaluator(Network network, int plies) {
+        this(network, NetworkKernel.get(), plies);
+    }
+
+    NeuralEvaluator(Network network, NetworkKernel kernel, int plies) {
+        this.network = network;
+        this.kernel = kernel;
+        accumulators = new int[plies][Network.HIDDEN];
+    }
+
+    /**
+     * Notes that the position at a ply has been replaced, and so have any
+     * below it.
+     */
+    void changed(int ply) {
+        if (current >= ply) {
+            current = ply - 1;
+        }
+    }
+
+    /**
+     * @param line the positions of the line searched, from the root to ply
+     * @return the score of the position at ply for the player to move
+     */
+    int evaluate(GameState[] line, int ply) {
+        if (current < 0) {
+            refresh(line[0].board(), accumulators[0]);
+            current = 0;
+        }
+        while (current < ply) {
+            update(line[current].board(), line[current + 1].board(),
+                    accumulators[current], accumulators[current + 1]);
+            current++;
+        }
+        int score = kernel.output(accumulators[ply], network)
+                / Network.OUTPUT_SCALE;
+        return (line[ply].sideToMove() == 'r') ? score : -score;
+    }
+
+    /**
+     * Scores a position on its own, working its accumulator out from
+     * scratch.
+     */
+    int evaluate(GameState state) {
+        refresh(state.board(), accumulators[0]);
+        current = -1;
+        int score = kernel.output(accumulators[0], network)
+                / Network.OUTPUT_SCALE;
+        return (state.sideToMove() == 'r') ? score : -score;
+    }
+
+    private void refresh(Board board, int[] accumulator) {
+        int count = 0;
+        for (int type = 0; type < 4; type++) {
+            for (int pieces = mask(board, type); pieces != 0;
+                    pieces &= pieces - 1) {
+                added[count++] = Network.feature(type,
+                        Integer.numberOfTrailingZeros(pieces));
+            }
+        }
+        kernel.refresh(accumulator, network, added, count);
+    }
+
+    private void update(Board from, Board to, int[] fromAccumulator,
+                        int[] toAccumulator) {
+        int removedCount = 0;
+        int addedCount = 0;
+        for (int type = 0; type < 4; type++) {
+            int before = mask(from, type);
+            int after = mask(to, type);
+            for (int gone = before & ~after; gone != 0; gone &= gone - 1) {
+                removed[removedCount++] = Network.feature(type,
+                        Integer.numberOfTrailingZeros(gone));
+            }
+            for (int come = after & ~before; come != 0; come &= come - 1) {
+                added[addedCount++] = Network.feature(type,
+                        Integer.numberOfTrailingZeros(come));
+            }
+        }
+        kernel.update(fromAccumulator, toAccumulator, network, removed,
+                removedCount, added, addedCount);
+    }
+
+    /**
+     * @return the squares of one kind of piece, in Zobrist's order
+     */
+    private static int mask(Board board, int type) {
+        switch (type) {
+            case Zobrist.RED_MAN:
+                return board.pieces('r') & ~board.kings();
+            case Zobrist.RED_KING:
+                return board.pieces('r') & board.kings();
+            case Zobrist.BLACK_MAN:
+                return board.pieces('b') & ~board.kings();
+            default:
+                return board.pieces('b') & board.kings();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package checkers;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Moves known to be good in the opening, looked up by position so a game can
+ * start without searching. Every game begins from the same position, so the
+ * first moves of recorded games are played over and over; the book counts how
+ * often each move was played from each position, and the more often a move
+ * was played the more likely it is to be chosen.
+ *
+ * The file is a list of records sorted by position key (GameState.key()),
+ * memory-mapped and binary searched, so opening it costs nothing and a
+ * lookup touches only a handful of pages. The continuations of a multiple
+ * jump are positions of their own, each with its one move.
+ *
+ * File layout, all numbers big-endian:
+ *
+ *   int    magic "CKOB"
+ *   int    version
+ *   int    number of records, then for each one:
+ *            long position key, short packed move, short times played
+ *
+ * Books are made from game records with the Builder, or from the command
+ * line:
+ *
+ *   java checkers.OpeningBook build book.ckob plies games...
+ *
+ * where each file of games is either PDN (a name ending in .pdn) or has one
+ * game a line, its turns written in PDN notation (move numbers and results
+ * are skipped). Games set up from a FEN are left out, since they do not
+ * start from the usual position. A book may be used by several threads at
+ * once.
+ */
+public final class OpeningBook implements Closeable {
+
+    /** Where the game looks for a book */
+    public static final String DEFAULT_FILE = "opening.ckob";
+
+    private static final int MAGIC = 0x434B4F42;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_BYTES = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer file;
+    private final int records;
+
+    private OpeningBook(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Opening books are limited to 2 GB.");
+        }
+        file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        file.order(ByteOrder.BIG_ENDIAN);
+        if (size < HEADER_BYTES || file.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book.");
+        }
+        int version = file.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported opening book version " + version);
+        }
+        records = file.getInt(8);
+        if (HEADER_BYTES + (long) records * RECORD_BYTES > size) {
+            throw new IOException("The opening book is cut short.");
+        }
+    }
+
+    /**
+     * @exception IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new OpeningBook(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the book at path, or null if there is no file there or it
+     * cannot be read
+     */
+    public static OpeningBook openIfPresent(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return open(path);
+        } catch (IOException e) {
+            System.err.println("Cannot open opening book " + path + ": "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of position and move pairs in the book
+     */
+    public int size() {
+        return records;
+    }
+
+    /**
+     * Finds the book moves for a position.
+     * @param moves receives the packed moves, at least Rules.MAX_MOVES long
+     * @param weights receives how often each was played, or may be null
+     * @return the number of moves found, 0 if the position is not in the book
+     */
+    public int moves(GameState state, int[] moves, int[] weights) {
+        long key = state.key();
+        // Find the first record for the key
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int count = 0;
+        for (int i = low; i < records && key(i) == key
+                && count < moves.length; i++) {
+            int offset = HEADER_BYTES + i * RECORD_BYTES;
+            int move = file.getShort(offset + 8) & 0xFFFF;
+            // A different position with the same key is very unlikely, but
+            // its moves would not be legal here
+            if (!Rules.isLegal(state, Rules.from(move), Rules.to(move))) {
+                continue;
+            }
+            moves[count] = move;
+            if (weights != null) {
+                weights[count] = file.getShort(offset + 10) & 0xFFFF;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Chooses one of the book moves for a position, each in proportion to
+     * how often it was played.
+     * @return the packed move, or -1 if the position is not in the book
+     */
+    public int choose(GameState state, Random random) {
+        int[] moves = new int[Rules.MAX_MOVES];
+        int[] weights = new int[Rules.MAX_MOVES];
+        int count = moves(state, moves, weights);
+        if (count == 0) {
+            return -1;
+        }
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long key(int record) {
+        return file.getLong(HEADER_BYTES + record * RECORD_BYTES);
+    }
+
+    /**
+     * Collects the moves of recorded games and writes them out as a book.
+     */
+    public static final class Builder {
+
+        private final int maxPlies;
+        // Times each move was played, by position key and then move
+        private final Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+        private int games;
+
+        /**
+         * @param maxPlies how many turns of each game to take into the book
+         */
+        public Builder(int maxPlies) {
+            this.maxPlies = maxPlies;
+        }
+
+        /**
+         * Adds the first turns of a game played from the starting position.
+         * @param turns the game's turns in PDN notation, such as 11-15 or
+         *              9x18x27; move numbers and results are skipped
+         * @exception IllegalArgumentException if a turn cannot be read or is
+         * not legal. The turns before it are still added.
+         */
+        public void addGame(List<String> turns) {
+            GameState state = new GameState();
+            int[] hops = new int[12];
+            int plies = 0;
+            for (String turn : turns) {
+                if (plies == maxPlies) {
+                    break;
+                }
+                if (!isMove(turn)) {
+                    continue;
+                }
+                int count = Fen.parseTurn(state, turn, hops);
+                for (int i = 0; i < count; i++) {
+                    counts.computeIfAbsent(state.key(), k -> new HashMap<>())
+                            .merge(hops[i], 1, Integer::sum);
+                    Rules.play(state, hops[i]);
+                }
+                plies++;
+            }
+            games++;
+        }
+
+        /**
+         * @return the number of games added
+         */
+        public int games() {
+            return games;
+        }
+
+        /**
+         * Writes the book, leaving out moves played fewer than minCount
+         * times.
+         * @return the number of records written
+         * @exception IOException if the file cannot be written
+         */
+        public int write(Path output, int minCount) throws IOException {
+            List<long[]> records = new ArrayList<>();
+            for (Map.Entry<Long, Map<Integer, Integer>> position
+                    : counts.entrySet()) {
+                for (Map.Entry<Integer, Integer> move
+                        : position.getValue().entrySet()) {
+                    if (move.getValue() >= minCount) {
+                        records.add(new long[] {position.getKey(),
+                                move.getKey(), move.getValue()});
+                    }
+                }
+            }
+            records.sort((a, b) -> (a[0] != b[0]) ? Long.compare(a[0], b[0])
+                    : Long.compare(a[1], b[1]));
+
+            try (OutputStream stream = Files.newOutputStream(output);
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(stream))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(records.size());
+                for (long[] record : records) {
+                    out.writeLong(record[0]);
+                    out.writeShort((int) record[1]);
+                    out.writeShort((int) Math.min(record[2], 0xFFFF));
+                }
+            }
+            return records.size();
+        }
+
+        /**
+         * @return false for move numbers such as "12." and results
+         */
+        private static boolean isMove(String token) {
+            return !token.endsWith(".") && !token.equals("*")
+                    && !token.equals("1-0") && !token.equals("0-1")
+                    && !token.equals("2-0") && !token.equals("0-2")
+                    && !token.equals("1-1") && !token.equals("1/2-1/2");
+        }
+    }
+
+    /**
+     * Adds the games of a PDN file, one at a time.
+     * @return the number of games with errors
+     */
+    private static int addPdnGames(Builder builder, Path path)
+            throws IOException {
+        int skipped = 0;
+        try (PdnReader reader = PdnReader.open(path)) {
+            PdnGame game;
+            while ((game = reader.next()) != null) {
+                if (game.tag("FEN") != null) {
+                    continue;
+                }
+                try {
+                    builder.addGame(game.moves());
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    System.err.println(path + ": " + e.getMessage());
+                }
+            }
+        }
+        return skipped;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4 || !args[0].equals("build")) {
+            System.err.println("Usage: java checkers.OpeningBook build "
+                    + "book.ckob plies games...");
+            System.exit(2);
+        }
+        Path output = Paths.get(args[1]);
+        Builder builder = new Builder(Integer.parseInt(args[2]));
+        int skipped = 0;
+        for (int i = 3; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (args[i].toLowerCase().endsWith(".pdn")) {
+                skipped += addPdnGames(builder, path);
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(path)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        builder.addGame(List.of(line.split("\\s+")));
+                    } catch (IllegalArgumentException e) {
+                        skipped++;
+                        System.err.println(args[i] + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        int records = builder.write(output, 1);
+        System.out.printf("%d games (%d with errors), %d records written to %s%n",
+                builder.games(), skipped, records, output);
+    }
+}
@@ -0,0 +1,173 @@
+package checkers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs several Searches of the same position at once on different threads
+ * (the "Lazy SMP" scheme). They share one TranspositionTable, so every
+ * thread benefits from what the others have already searched. Helper
+ * threads start at alternating depths so they get ahead of the main search
+ * and fill the table with results it is about to need. The main search, run
+ * on the calling thread, decides the move; the helpers are stopped as soon
+ * as it finishes.
+ */
+public final class ParallelSearch {
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    /**
+     * @param threads the number of threads to search with, at least 1
+     * @param table the transposition table all of them share
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "A search needs at least one thread.");
+        }
+        this.table = table;
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        helpers = (threads > 1) ?
+                Executors.newFixedThreadPool(threads - 1, new HelperFactory()) :
+                null;
+    }
+
+    /**
+     * @param tablebase endgame results for every thread to use, or null for
+     *                  none
+     */
+    public void setTablebase(Tablebase tablebase) {
+        for (Search search : searches) {
+            search.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * @param network the network for every thread to score positions with,
+     *                or null to use Evaluation
+     */
+    public void setNetwork(Network network) {
+        for (Search search : searches) {
+            search.setNetwork(network);
+        }
+    }
+
+    /**
+     * Searches for the best move in a position. Only one search runs at a
+     * time; a second caller waits for the first to finish.
+     * @param root the position to search. It is not changed.
+     * @param maxDepth the deepest iteration to search, in plies
+     * @param timeLimit milliseconds to search for, or 0 for no limit
+     * @return the best packed move found, or -1 if there is no legal move
+     */
+    public synchronized int search(GameState root, int maxDepth,
+            long timeLimit) {
+        // Once for every thread, so none of them sees the others' entries
+        // from this search as old
+        table.newSearch();
+        Future<?>[] running = new Future<?>[searches.length];
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            helper.reset(); // stopped at the end of the last search
+            int firstDepth = 1 + (i & 1);
+            running[i] = helpers.submit(() ->
+                    helper.search(root, firstDepth, maxDepth, timeLimit));
+        }
+
+        int move = searches[0].search(root, 1, maxDepth, timeLimit);
+
+        // The main search has its answer, so the helpers can stop
+        for (int i = 1; i < searches.length; i++) {
+            searches[i].stop();
+        }
+        for (int i = 1; i < searches.length; i++) {
+            try {
+                running[i].get();
+            } catch (Exception e) {
+                // A helper failing only costs speed, never the answer
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. May be called from
+     * any thread. A search started after it also returns at once, until
+     * reset() is called.
+     */
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    /**
+     * Undoes stop(), so the next search runs. Called by whoever sets the
+     * search up, as with Search.reset().
+     */
+    public void reset() {
+        searches[0].reset();
+    }
+
+    /**
+     * Stops the helper threads for good.
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of threads searching
+     */
+    public int threads() {
+        return searches.length;
+    }
+
+    /**
+     * @return the score of the last move found, for the player to move
+     */
+    public int bestScore() {
+        return searches[0].bestScore();
+    }
+
+    /**
+     * @return the deepest iteration the main search finished
+     */
+    public int depthReached() {
+        return searches[0].depthReached();
+    }
+
+    /**
+     * @return the number of positions all threads visited in the last search
+     */
+    public long nodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.nodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Makes daemon threads, so an idle search never keeps the program alive
+     */
+    private static final class HelperFactory implements ThreadFactory {
+        private int count = 0;
+
+        @Override
+        public synchronized Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "search-helper-" + (++count));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package checkers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game record in PDN (Portable Draughts Notation): the tags describing
+ * the game, such as [Event "..."] and [FEN "..."], the turns played in PDN
+ * notation, and the result.
+ *
+ * Results are written as PDN writes them, the first number being the score
+ * of the player who moves first. That is Red here (PDN's Black), so "1-0" is
+ * a win for Red, "0-1" a win for Black and "1/2-1/2" a draw; "*" means the
+ * game was not finished.
+ */
+public final class PdnGame {
+
+    public static final String RED_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNFINISHED = "*";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<String> moves = new ArrayList<>();
+    private String result = UNFINISHED;
+
+    /**
+     * @return the value of a tag, or null if the game does not have it
+     */
+    public String tag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Sets a tag, keeping its place if the game already has it.
+     */
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * @return every tag, in the order they were set
+     */
+    public Map<String, String> tags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return the turns played, in PDN notation
+     */
+    public List<String> moves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * @param turn a whole turn in PDN notation, such as 11-15 or 9x18x27
+     */
+    public void addMove(String turn) {
+        moves.add(turn);
+    }
+
+    public String result() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * @return a new game in the position this one started from: the FEN tag
+     * if there is one, otherwise the usual starting position
+     * @exception IllegalArgumentException if the FEN tag cannot be read
+     */
+    public GameState start() {
+        String fen = tag("FEN");
+        return (fen == null) ? new GameState() : Fen.parse(fen);
+    }
+
+    /**
+     * @return a new game with every turn of this one played
+     * @exception IllegalArgumentException if a turn is not legal
+     */
+    public GameState replay() {
+        GameState state = start();
+        int[] hops = new int[12];
+        for (String turn : moves) {
+            int count = Fen.parseTurn(state, turn, hops);
+            for (int i = 0; i < count; i++) {
+                Rules.play(state, hops[i]);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @return true if token is one of the results PDN allows
+     */
+    static boolean isResult(String token) {
+        switch (token) {
+            case RED_WINS:
+            case BLACK_WINS:
+            case DRAW:
+            case UNFINISHED:
+            case "2-0":
+            case "0-2":
+            case "1-1":
+            case "0-0":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
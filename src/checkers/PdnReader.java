@@ -0,0 +1,455 @@
+package checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Reads games in PDN one at a time from a stream, so an archive of any size
+ * can be read in the memory one game takes. Nothing is read ahead of the game
+ * asked for, so a slow consumer simply slows the reading down.
+ *
+ * Comments in braces, variations in parentheses, move strengths such as "!"
+ * and annotations such as "$3" are skipped; what is kept is each game's tags,
+ * its turns and its result. A game ends at its result, or at a line of tags
+ * whose last non-blank line was not tags, which begins the next game.
+ *
+ * forEachParallel() reads a large file with several threads by splitting it
+ * into parts at the start of a game and reading each part on its own thread.
+ *
+ * Text is read as ISO-8859-1, which PDN files almost always are, so byte
+ * and character positions are the same.
+ */
+public final class PdnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    // A line of tags, such as [Event "Club match"]
+    private static final Pattern TAG_LINE =
+            Pattern.compile("\\s*\\[\\w+\\s+\".*\"\\s*\\].*");
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferEnd;
+    private int bufferPosition;
+
+    // File offset of the next byte to read, and where this reader must stop
+    private long position;
+    private final long limit;
+
+    // A line read too far, to be read again
+    private String pendingLine;
+    private final StringBuilder line = new StringBuilder();
+
+    private boolean inComment;
+    private int variationDepth;
+
+    /**
+     * Reads games from a stream until it ends.
+     */
+    public PdnReader(InputStream in) {
+        this(in, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param in a stream positioned at offset in the file
+     * @param offset where the stream starts; must be the start of a game
+     * @param limit where to stop. It must also be the start of a game, or
+     *              the end of the file.
+     */
+    private PdnReader(InputStream in, long offset, long limit) {
+        this.in = in;
+        this.position = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @exception IOException if the file cannot be opened
+     */
+    public static PdnReader open(Path path) throws IOException {
+        return new PdnReader(Files.newInputStream(path));
+    }
+
+    /**
+     * Reads the next game.
+     * @return the game, or null if there are no more
+     * @exception IOException if the stream cannot be read
+     */
+    public PdnGame next() throws IOException {
+        PdnGame game = null;
+        boolean inTags = false;
+        String text;
+        while ((text = readLine()) != null) {
+            String trimmed = text.trim();
+            if (inComment || variationDepth > 0) {
+                if (game != null) {
+                    readMoves(game, trimmed);
+                }
+                continue;
+            }
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (TAG_LINE.matcher(trimmed).matches()) {
+                if (game != null && !inTags) {
+                    pendingLine = text; // the next game's tags
+                    return game;
+                }
+                if (game == null) {
+                    game = new PdnGame();
+                }
+                readTags(game, trimmed);
+                inTags = true;
+                continue;
+            }
+            if (game == null) {
+                game = new PdnGame(); // a game without tags
+            }
+            inTags = false;
+            if (readMoves(game, trimmed)) {
+                return game;
+            }
+        }
+        return game;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads every game in a file with several threads, each reading a part
+     * of the file that starts at the beginning of a game. action is called
+     * on the thread that read the game, so it must be safe to call from
+     * several at once, and the order games are seen in is not the file's.
+     * Each thread reads its next game only when action returns.
+     * @return the number of games read
+     * @exception IOException if the file cannot be read
+     */
+    public static long forEachParallel(Path path, int threads,
+            Consumer<? super PdnGame> action) throws IOException {
+        long[] starts = split(path, Math.max(1, threads));
+        int parts = starts.length - 1;
+        AtomicLong count = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(parts);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                long start = starts[i];
+                long end = starts[i + 1];
+                running.add(pool.submit(() -> {
+                    try (InputStream in = Files.newInputStream(path)) {
+                        in.skipNBytes(start);
+                        PdnReader reader = new PdnReader(in, start, end);
+                        PdnGame game;
+                        while ((game = reader.next()) != null) {
+                            action.accept(game);
+                            count.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<?> part : running) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + path, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        return count.get();
+    }
+
+    /**
+     * @return where each part of the file starts, every one at the start of a
+     * game, followed by the file's size. Parts that would be empty are left
+     * out.
+     */
+    static long[] split(Path path, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> starts = new ArrayList<>();
+            starts.add(0L);
+            for (int i = 1; i < parts; i++) {
+                long start = gameStart(channel, size * i / parts);
+                if (start > starts.get(starts.size() - 1) && start < size) {
+                    starts.add(start);
+                }
+            }
+            starts.add(size);
+            long[] result = new long[starts.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = starts.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return the offset of the first game that starts at or after offset:
+     * the first line of tags whose last non-blank line was not tags, which
+     * is where next() decides a new game begins
+     */
+    private static long gameStart(FileChannel channel, long offset)
+            throws IOException {
+        long size = channel.size();
+        // Start at the beginning of a line
+        long lineStart = offset;
+        if (lineStart > 0 && byteAt(channel, lineStart - 1) != '\n') {
+            lineStart = lineEnd(channel, lineStart, size) + 1;
+        }
+
+        // Find whether the last non-blank line before it was tags
+        boolean afterTags = false;
+        long end = lineStart - 1; // the newline ending the previous line
+        while (end > 0) {
+            long begin = end;
+            while (begin > 0 && byteAt(channel, begin - 1) != '\n') {
+                begin--;
+            }
+            String text = lineAt(channel, begin, end);
+            if (!text.trim().isEmpty()) {
+                afterTags = TAG_LINE.matcher(text).matches();
+                break;
+            }
+            end = begin - 1;
+        }
+
+        while (lineStart < size) {
+            long lineEnd = lineEnd(channel, lineStart, size);
+            String text = lineAt(channel, lineStart, lineEnd);
+            if (!text.trim().isEmpty()) {
+                boolean tags = TAG_LINE.matcher(text).matches();
+                if (tags && !afterTags) {
+                    return lineStart;
+                }
+                afterTags = tags;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return size;
+    }
+
+    /**
+     * @return the offset of the newline ending the line at start, or size
+     */
+    private static long lineEnd(FileChannel channel, long start, long size)
+            throws IOException {
+        long end = start;
+        while (end < size && byteAt(channel, end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return the text of the bytes in [begin, end)
+     */
+    private static String lineAt(FileChannel channel, long begin, long end)
+            throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - begin));
+        while (bytes.hasRemaining()
+                && channel.read(bytes, begin + bytes.position()) > 0) {
+            // keep reading
+        }
+        return new String(bytes.array(), 0, bytes.position(),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    private static int byteAt(FileChannel channel, long offset)
+            throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        if (channel.read(one, offset) < 1) {
+            return -1;
+        }
+        return one.get(0) & 0xFF;
+    }
+
+    /**
+     * Reads tags such as [Event "Club match"], which may share a line.
+     */
+    private static void readTags(PdnGame game, String text) {
+        int i = 0;
+        while ((i = text.indexOf('[', i)) >= 0) {
+            int close = closingBracket(text, i);
+            if (close < 0) {
+                return;
+            }
+            String tag = text.substring(i + 1, close).trim();
+            int space = tag.indexOf(' ');
+            if (space > 0) {
+                String value = tag.substring(space + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"")
+                        && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1)
+                            .replace("\\\"", "\"").replace("\\\\", "\\");
+                }
+                game.setTag(tag.substring(0, space), value);
+            }
+            i = close + 1;
+        }
+    }
+
+    /**
+     * @return the index of the ] closing the tag opened at open, skipping any
+     * in its quoted value, or -1
+     */
+    private static int closingBracket(String text, int open) {
+        boolean quoted = false;
+        for (int i = open + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ']' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the turns on a line of move text to the game.
+     * @return true if the line held the game's result, which ends it
+     */
+    private boolean readMoves(PdnGame game, String text) {
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (inComment) {
+                if (c == '}') {
+                    inComment = false;
+                }
+                i++;
+                continue;
+            }
+            if (c == '{') {
+                inComment = true;
+                i++;
+                continue;
+            }
+            if (c == '(') {
+                variationDepth++;
+                i++;
+                continue;
+            }
+            if (c == ')') {
+                variationDepth = Math.max(0, variationDepth - 1);
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int end = i;
+            while (end < length && !Character.isWhitespace(text.charAt(end))
+                    && "{}()".indexOf(text.charAt(end)) < 0) {
+                end++;
+            }
+            if (variationDepth == 0) {
+                String token = text.substring(i, end);
+                if (PdnGame.isResult(token)) {
+                    game.setResult(token);
+                    return true;
+                }
+                addMove(game, token);
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a token of move text if it is a turn, after taking off any turn
+     * number in front of it ("12." or "12...") and any "!" or "?" after it.
+     */
+    private static void addMove(PdnGame game, String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot >= 0) {
+            token = token.substring(dot + 1);
+        }
+        int end = token.length();
+        while (end > 0 && (token.charAt(end - 1) == '!'
+                || token.charAt(end - 1) == '?')) {
+            end--;
+        }
+        token = token.substring(0, end);
+        if (token.isEmpty() || token.charAt(0) == '$'
+                || !Character.isDigit(token.charAt(0))
+                || (token.indexOf('-') < 0 && token.indexOf('x') < 0)) {
+            return;
+        }
+        game.addMove(token);
+    }
+
+    /**
+     * @return the next line without its line ending, or null at the end of
+     * the stream or this reader's part of the file
+     */
+    private String readLine() throws IOException {
+        if (pendingLine != null) {
+            String text = pendingLine;
+            pendingLine = null;
+            return text;
+        }
+        if (position >= limit) {
+            return null;
+        }
+        line.setLength(0);
+        boolean any = false;
+        for (;;) {
+            if (bufferPosition == bufferEnd) {
+                bufferEnd = in.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if (bufferEnd <= 0) {
+                    bufferEnd = 0;
+                    return any ? line.toString() : null;
+                }
+            }
+            int b = buffer[bufferPosition++] & 0xFF;
+            position++;
+            any = true;
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package checkers;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Writes games in PDN, one after another, in the form PdnReader reads: the
+ * tags one to a line, a blank line, the numbered turns wrapped to 80
+ * columns and ending with the result, and a blank line.
+ */
+public final class PdnWriter implements Closeable, Flushable {
+
+    private static final int LINE_WIDTH = 80;
+
+    private final Writer out;
+
+    public PdnWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens a file for writing, adding to the end of it if append is true.
+     * @exception IOException if the file cannot be opened
+     */
+    public static PdnWriter open(Path path, boolean append) throws IOException {
+        return new PdnWriter(new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, append ?
+                        StandardOpenOption.APPEND :
+                        StandardOpenOption.TRUNCATE_EXISTING),
+                StandardCharsets.ISO_8859_1)));
+    }
+
+    /**
+     * Writes one game. A Result tag matching the game's result is added if
+     * the game has none.
+     * @exception IOException if it cannot be written
+     */
+    public void write(PdnGame game) throws IOException {
+        for (Map.Entry<String, String> tag : game.tags().entrySet()) {
+            writeTag(tag.getKey(), tag.getValue());
+        }
+        if (game.tag("Result") == null) {
+            writeTag("Result", game.result());
+        }
+        out.write(System.lineSeparator());
+
+        // Turn numbers count pairs of turns, the first player's first, so a
+        // game from a FEN with the second player to move starts with "1..."
+        String fen = game.tag("FEN");
+        boolean firstPlayer = fen == null || fen.trim().isEmpty()
+                || Character.toUpperCase(fen.trim().charAt(0)) != 'W';
+        StringBuilder line = new StringBuilder();
+        int number = 1;
+        boolean first = true;
+        for (String move : game.moves()) {
+            if (firstPlayer) {
+                append(line, number + ". " + move);
+            } else {
+                append(line, first ? number + "... " + move : move);
+                number++;
+            }
+            firstPlayer = !firstPlayer;
+            first = false;
+        }
+        append(line, game.result());
+        out.write(line.toString());
+        out.write(System.lineSeparator());
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[' + name + " \"" + value.replace("\\", "\\\\")
+                .replace("\"", "\\\"") + "\"]");
+        out.write(System.lineSeparator());
+    }
+
+    /**
+     * Adds text to the line, first writing the line out if it would get too
+     * long
+     */
+    private void append(StringBuilder line, String text) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + text.length() > LINE_WIDTH) {
+            out.write(line.toString());
+            out.write(System.lineSeparator());
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(text);
+    }
+}
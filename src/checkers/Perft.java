@@ -0,0 +1,141 @@
+package checkers;
+
+/**
+ * Counts the positions reached after every possible sequence of moves to a
+ * given depth ("perft"). The counts from the starting position are well
+ * known, so comparing against them checks the move generator, and the time
+ * taken measures its speed.
+ *
+ * A turn counts as one move however many jumps it contains, to match the
+ * published counts. Different jump orders that capture the same pieces are
+ * counted separately.
+ *
+ * Usage: java checkers.Perft depth [fen] [divide]
+ *
+ * With divide, the count at the final depth is also broken down by the first
+ * jump or step of each root move.
+ */
+public final class Perft {
+
+    /**
+     * Published perft counts for the starting position, by depth. Index 0 is
+     * depth 0.
+     */
+    static final long[] START_COUNTS = {
+        1L, 7L, 49L, 302L, 1469L, 7361L, 36768L, 179740L, 845931L,
+        3963680L, 18391564L, 85242128L, 388623673L
+    };
+
+    // Deep enough for 30 turns of up to 9 jumps each
+    private static final int MAX_PLY = 300;
+
+    private final GameState[] stack = new GameState[MAX_PLY + 1];
+    private final int[] moves = new int[(MAX_PLY + 1) * Rules.MAX_MOVES];
+
+    public Perft() {
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            stack[ply] = new GameState();
+        }
+    }
+
+    /**
+     * @param root the position to count from. It is not changed.
+     * @param depth the number of turns to play
+     * @return the number of positions reached
+     */
+    public long count(GameState root, int depth) {
+        if (depth > 30) {
+            throw new IllegalArgumentException("Perft depth is limited to 30.");
+        }
+        stack[0].copyFrom(root);
+        return count(0, depth);
+    }
+
+    private long count(int ply, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        int start = ply * Rules.MAX_MOVES;
+        int end = Rules.generateMoves(stack[ply], moves, start);
+        long nodes = 0;
+        for (int i = start; i < end; i++) {
+            GameState child = stack[ply + 1];
+            child.copyFrom(stack[ply]);
+            if ((Rules.play(child, moves[i]) & Rules.TURN_OVER) != 0) {
+                nodes += count(ply + 1, depth - 1);
+            } else {
+                nodes += count(ply + 1, depth); // the same turn continues
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Prints the count after each root move.
+     * @return the total
+     */
+    public long divide(GameState root, int depth) {
+        int[] rootMoves = new int[Rules.MAX_MOVES];
+        int count = Rules.generateMoves(root, rootMoves, 0);
+        GameState child = new GameState();
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            child.copyFrom(root);
+            int result = Rules.play(child, rootMoves[i]);
+            long nodes = count(child,
+                    ((result & Rules.TURN_OVER) != 0) ? depth - 1 : depth);
+            System.out.printf("%-8s %d%n", Fen.moveText(rootMoves[i]), nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    public static void main(String[] args) {
+        int depth = 0;
+        try {
+            depth = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        if (depth < 1) {
+            System.err.println("Usage: java checkers.Perft depth [fen] [divide]");
+            System.err.println("depth is a number of turns, 1 or more");
+            System.exit(2);
+        }
+        GameState root = new GameState();
+        boolean fromStart = true;
+        boolean divide = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("divide")) {
+                divide = true;
+            } else {
+                root = Fen.parse(args[i]);
+                fromStart = false;
+            }
+        }
+
+        System.out.println(Fen.format(root));
+        Perft perft = new Perft();
+        boolean allMatch = true;
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = perft.count(root, d);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String check = "";
+            if (fromStart && d < START_COUNTS.length) {
+                boolean match = nodes == START_COUNTS[d];
+                allMatch &= match;
+                check = match ? "ok" : "MISMATCH, expected " + START_COUNTS[d];
+            }
+            System.out.printf("depth %2d %14d %10.3f s %14.0f nodes/s  %s%n",
+                    d, nodes, seconds, nodes / Math.max(seconds, 1e-9), check);
+        }
+        if (divide) {
+            System.out.println();
+            perft.divide(root, depth);
+        }
+        if (!allMatch) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package checkers;
+
+/**
+ * The rules of checkers as the Checkers Federation plays them, applied to a
+ * GameState. Jumps are mandatory, a piece that jumps must keep jumping while
+ * it can, and a man that reaches the far row is kinged, which ends the turn.
+ *
+ * Moves are given as a pair of square numbers (see Board), or packed into a
+ * single int by move() for code that handles lots of them. A multiple jump is
+ * played one jump at a time; the same player stays on move until the
+ * jumping piece has nothing left to jump.
+ *
+ * make() plays a move like play() and returns an undo record, an int holding
+ * the move and everything play() overwrites, that unmake() uses to take the
+ * move back exactly. Records can be stacked in a MoveStack to undo a game
+ * to any depth, a jump at a time.
+ */
+public final class Rules {
+
+    // Flags returned by play()
+    public static final int CAPTURE = 1;
+    public static final int PROMOTION = 2;
+    public static final int TURN_OVER = 4;
+
+    /**
+     * The most moves a player can have in one position (12 kings with four
+     * moves each), and so the room generateMoves() needs in its buffer.
+     */
+    public static final int MAX_MOVES = 48;
+
+    // Layout of a packed move: from in bits 0-4, to in bits 5-9
+    private static final int SQUARE_MASK = 0x1F;
+    private static final int JUMP_FLAG = 1 << 10;
+    private static final int MOVE_MASK = (JUMP_FLAG << 1) - 1;
+
+    /* Layout of an undo record: the packed move in bits 0-10, the flags
+       play() returned in bits 11-13, then what play() cannot work backwards
+       from the new position
+    */
+    private static final int RESULT_SHIFT = 11;
+    private static final int CAPTURED_KING = 1 << 14;
+    private static final int BLACK_MOVED = 1 << 15;
+    private static final int CONTINUED_JUMP = 1 << 16;
+
+    private Rules() {
+    }
+
+    /**
+     * @param color 'r' or 'b'
+     * @return the other color
+     */
+    public static char opponent(char color) {
+        return (color == 'r') ? 'b' : 'r';
+    }
+
+    /**
+     * Packs a move into an int.
+     * @param from the square the piece starts on
+     * @param to the square it moves to
+     * @return the packed move
+     */
+    public static int move(int from, int to) {
+        return from | (to << 5) | (Board.isJump(from, to) ? JUMP_FLAG : 0);
+    }
+
+    /**
+     * @param move a packed move
+     * @return the square the piece starts on
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the square the piece moves to
+     */
+    public static int to(int move) {
+        return (move >>> 5) & SQUARE_MASK;
+    }
+
+    /**
+     * @param move a packed move
+     * @return true if the move jumps a piece
+     */
+    public static boolean isJump(int move) {
+        return (move & JUMP_FLAG) != 0;
+    }
+
+    /**
+     * @param state the game
+     * @return mask of the pieces of the player to move that can jump. If that
+     * player is in the middle of a multiple jump, only the jumping piece.
+     */
+    public static int jumpers(GameState state) {
+        Board board = state.board();
+        if (state.jumpingSquare() != -1) {
+            return 1 << state.jumpingSquare();
+        }
+        return board.jumpers(state.sideToMove());
+    }
+
+    /**
+     * @param state the game
+     * @param square the square of the piece to be moved
+     * @return mask of the squares that piece may legally move to this turn.
+     * Empty if it is not the player's piece or another piece has to jump.
+     */
+    public static int targets(GameState state, int square) {
+        Board board = state.board();
+        if (board.colorAt(square) != state.sideToMove()) {
+            return 0;
+        }
+        if (state.jumpingSquare() != -1) {
+            return (square == state.jumpingSquare()) ? board.jumps(square) : 0;
+        }
+        int jumps = board.jumps(square);
+        if (jumps != 0) {
+            return jumps;
+        }
+        return (jumpers(state) == 0) ? board.moves(square) : 0;
+    }
+
+    /**
+     * Writes every legal move for the player to move into moves as packed
+     * ints. Nothing is allocated, so the same buffer can be reused for every
+     * position.
+     * @param state the game
+     * @param moves buffer with room for MAX_MOVES moves after start
+     * @param start index of the first move to write
+     * @return the index after the last move written
+     */
+    public static int generateMoves(GameState state, int[] moves, int start) {
+        Board board = state.board();
+        char player = state.sideToMove();
+        int opponents = board.pieces(opponent(player));
+        int empty = board.empty();
+        int jumpers = jumpers(state);
+        int count = start;
+
+        if (jumpers != 0) {
+            while (jumpers != 0) {
+                int from = Integer.numberOfTrailingZeros(jumpers);
+                jumpers &= jumpers - 1;
+                int first = board.isKing(from) ? Board.DOWN_LEFT :
+                                                 Board.firstDirection(player);
+                int last = board.isKing(from) ? Board.UP_RIGHT : first + 1;
+                for (int direction = first; direction <= last; direction++) {
+                    if ((Board.step(from, direction) & opponents) != 0
+                            && (Board.jump(from, direction) & empty) != 0) {
+                        int to = Integer.numberOfTrailingZeros(
+                                Board.jump(from, direction));
+                        moves[count++] = from | (to << 5) | JUMP_FLAG;
+                    }
+                }
+            }
+            return count;
+        }
+
+        int remaining = board.movers(player);
+        while (remaining != 0) {
+            int from = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int first = board.isKing(from) ? Board.DOWN_LEFT :
+                                             Board.firstDirection(player);
+            int last = board.isKing(from) ? Board.UP_RIGHT : first + 1;
+            for (int direction = first; direction <= last; direction++) {
+                int step = Board.step(from, direction) & empty;
+                if (step != 0) {
+                    moves[count++] = from
+                            | (Integer.numberOfTrailingZeros(step) << 5);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the player to move may move the piece on from to to
+     */
+    public static boolean isLegal(GameState state, int from, int to) {
+        return (targets(state, from) & (1 << to)) != 0;
+    }
+
+    /**
+     * @return true if the player to move has no pieces or no legal moves,
+     * which loses the game
+     */
+    public static boolean isGameOver(GameState state) {
+        return (jumpers(state) | state.board().movers(state.sideToMove())) == 0;
+    }
+
+    /**
+     * Plays a legal packed move. See play(GameState, int, int).
+     * @param state the game
+     * @param move a move from generateMoves() or move()
+     * @return a combination of CAPTURE, PROMOTION and TURN_OVER
+     */
+    public static int play(GameState state, int move) {
+        return play(state, from(move), to(move));
+    }
+
+    /**
+     * Plays a legal move: moves the piece, removes a jumped piece, kings the
+     * piece if it reached the far row and passes the turn unless the piece
+     * must jump again.
+     * @param state the game
+     * @param from the square of the piece being moved
+     * @param to the square it moves to
+     * @return a combination of CAPTURE, PROMOTION and TURN_OVER
+     */
+    public static int play(GameState state, int from, int to) {
+        Board board = state.board();
+        char player = state.sideToMove();
+        int result = 0;
+
+        board.move(from, to);
+        if (Board.isJump(from, to)) {
+            board.remove(Board.jumpedSquare(from, to));
+            result |= CAPTURE;
+        }
+        if (!board.isKing(to) && Board.isKingRow(to, player)) {
+            board.promote(to);
+            result |= PROMOTION;
+        }
+
+        // Only a capture that did not end in a promotion can continue
+        if (result == CAPTURE && board.jumps(to) != 0) {
+            state.setTurn(player, to);
+        } else {
+            state.setTurn(opponent(player), -1);
+            result |= TURN_OVER;
+        }
+        return result;
+    }
+
+    /**
+     * Plays a legal move as play() does, remembering how to take it back.
+     * @param state the game
+     * @param move a move from generateMoves() or move()
+     * @return the undo record for unmake(). from(), to() and isJump() read
+     * the move from it and result() what play() would have returned.
+     */
+    public static int make(GameState state, int move) {
+        int from = from(move);
+        int to = to(move);
+        int undo = move(from, to);
+        if (state.sideToMove() == 'b') {
+            undo |= BLACK_MOVED;
+        }
+        if (state.jumpingSquare() >= 0) {
+            undo |= CONTINUED_JUMP;
+        }
+        if (isJump(undo) && state.board().isKing(Board.jumpedSquare(from, to))) {
+            undo |= CAPTURED_KING;
+        }
+        return undo | (play(state, from, to) << RESULT_SHIFT);
+    }
+
+    /**
+     * Takes back the move make() returned the record for. Moves must be
+     * taken back in the reverse of the order they were made.
+     * @param state the game, as make() left it
+     * @param undo the undo record
+     */
+    public static void unmake(GameState state, int undo) {
+        Board board = state.board();
+        int from = from(undo);
+        int to = to(undo);
+        char player = mover(undo);
+
+        board.move(to, from);
+        if ((result(undo) & PROMOTION) != 0) {
+            board.demote(from);
+        }
+        if (isJump(undo)) {
+            board.place(Board.jumpedSquare(from, to), opponent(player),
+                        (undo & CAPTURED_KING) != 0);
+        }
+        // A jump that carried on a multiple jump can only have started where
+        // the last one landed
+        state.setTurn(player, ((undo & CONTINUED_JUMP) != 0) ? from : -1);
+    }
+
+    /**
+     * @param undo an undo record from make()
+     * @return the packed move
+     */
+    public static int undoneMove(int undo) {
+        return undo & MOVE_MASK;
+    }
+
+    /**
+     * @param undo an undo record from make()
+     * @return the flags play() returned for the move
+     */
+    public static int result(int undo) {
+        return (undo >>> RESULT_SHIFT) & (CAPTURE | PROMOTION | TURN_OVER);
+    }
+
+    /**
+     * @param undo an undo record from make()
+     * @return the color of the player who made the move
+     */
+    public static char mover(int undo) {
+        return ((undo & BLACK_MOVED) != 0) ? 'b' : 'r';
+    }
+
+    /**
+     * @param undo an undo record from make()
+     * @return true if the piece jumped was a king
+     */
+    public static boolean capturedKing(int undo) {
+        return (undo & CAPTURED_KING) != 0;
+    }
+}
@@ -0,0 +1,554 @@
+package checkers;
+
+/**
+ * Finds a move for the computer player with an iterative-deepening alpha-beta
+ * (negamax) search. Each iteration searches one ply deeper than the last
+ * until the depth or time limit is reached, and the best move of the last
+ * finished iteration is played. When the depth runs out the search keeps
+ * following jumps (quiescence), since they are forced and a position in the
+ * middle of an exchange cannot be judged by counting pieces.
+ *
+ * The continuation of a multiple jump is part of the same turn, so it costs
+ * no depth and the score is not negated.
+ *
+ * Results are kept in a TranspositionTable, so positions reached by more than
+ * one order of moves are only searched once and the best move from an earlier
+ * iteration is tried first.
+ *
+ * With a Tablebase, an endgame a capture leads into is not searched any
+ * further: a win scores TABLEBASE_WIN plus the evaluation, so the search
+ * heads for the capture that wins. The tables only say win, loss or draw,
+ * not how to finish, so once the game itself is in one they are used
+ * differently. The root moves are narrowed to those that keep its result,
+ * drawn positions score 0, and the rest are searched as usual, so the
+ * evaluation leads the search on to the captures that end the game.
+ *
+ * Positions are scored by Evaluation, or by a Network if one is given with
+ * setNetwork().
+ *
+ * A Search keeps its own copy of every position it visits and allocates
+ * nothing while searching. One instance must only be used by one thread at
+ * a time, but several can share a table.
+ */
+public final class Search {
+
+    /** Score of a won position, less one for each ply it takes to win */
+    public static final int WIN = 100000;
+
+    /** Score of a position the tablebase says is won, before evaluation */
+    public static final int TABLEBASE_WIN = WIN / 2;
+
+    /**
+     * Scores from here up are wins, found by the search or the tablebase,
+     * and from its negative down losses; no evaluation comes near it
+     */
+    static final int LEAST_WIN = TABLEBASE_WIN / 2;
+
+    private static final int INFINITY = WIN + 1;
+    private static final int MAX_PLY = 128;
+
+    // Table size used when none is given: 2^20 entries, 16 MB
+    private static final int DEFAULT_TABLE_BITS = 20;
+
+    private final TranspositionTable table;
+    private Tablebase tablebase;
+    private int tablebasePieces;
+    // The tablebase result of the root, UNKNOWN if it is not covered
+    private int rootResult;
+    private NeuralEvaluator network; // null to use Evaluation
+
+    // Positions and move lists for each ply of the current line
+    private final GameState[] stack = new GameState[MAX_PLY + 1];
+    private final int[] moves = new int[(MAX_PLY + 1) * Rules.MAX_MOVES];
+
+    private long nodes;
+    // Kept only while Metrics are on
+    private long movesGenerated;
+    private long tableProbes;
+    private long tableHits;
+    private long deadline;
+    private boolean aborted;
+    private volatile boolean stopped;
+
+    private int bestMove = -1;
+    private int bestScore;
+    private int depthReached;
+    private Progress progress;
+
+    /**
+     * Told of each iteration a search finishes, on the thread searching.
+     */
+    public interface Progress {
+        /**
+         * @param depth the depth just finished
+         * @param move the best packed move so far
+         * @param score its score, from the point of view of the player to
+         *              move
+         */
+        void iterationDone(int depth, int move, int score);
+    }
+
+    /**
+     * Creates a search with a transposition table of its own.
+     */
+    public Search() {
+        this(new TranspositionTable(DEFAULT_TABLE_BITS,
+                TranspositionTable.Replacement.DEEPER_OR_OLDER));
+    }
+
+    /**
+     * @param table the transposition table to use. It may be shared with
+     *              other searches, including ones running at the same time.
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            stack[ply] = new GameState();
+        }
+    }
+
+    /**
+     * @param tablebase endgame results to use in later searches, or null for
+     *                  none
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+        tablebasePieces = (tablebase == null) ? 0 : tablebase.maxPieces();
+    }
+
+    /**
+     * @param network the network to score positions with in later searches,
+     *                or null to use Evaluation
+     */
+    public void setNetwork(Network network) {
+        this.network = (network == null) ? null
+                : new NeuralEvaluator(network, MAX_PLY + 1);
+    }
+
+    /**
+     * @param progress told of each iteration later searches finish, or null
+     */
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Searches for the best move in a position.
+     * @param root the position to search. It is copied, not changed.
+     * @param maxDepth the deepest iteration to search, in plies
+     * @param timeLimit milliseconds to search for, or 0 for no limit
+     * @return the best packed move found, or -1 if there is no legal move
+     */
+    public int search(GameState root, int maxDepth, long timeLimit) {
+        table.newSearch();
+        return search(root, 1, maxDepth, timeLimit);
+    }
+
+    /**
+     * Searches for the best move, starting the iterations at firstDepth.
+     * ParallelSearch starts its helper threads at different depths so they
+     * fill the shared table with different results instead of repeating
+     * each other's work. The table's generation is left alone: the caller
+     * moves it on once for all the threads sharing the table, or each
+     * would take the others' entries for old ones.
+     */
+    int search(GameState root, int firstDepth, int maxDepth, long timeLimit) {
+        Metrics.SearchEvent event = new Metrics.SearchEvent();
+        event.begin();
+        long started = System.nanoTime();
+        movesGenerated = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        int move = iterate(root, firstDepth, maxDepth, timeLimit);
+        Metrics.searchDone(event, System.nanoTime() - started, move,
+                depthReached, nodes, movesGenerated, tableProbes, tableHits);
+        return move;
+    }
+
+    /**
+     * Runs the iterations of a search.
+     */
+    private int iterate(GameState root, int firstDepth, int maxDepth,
+                        long timeLimit) {
+        nodes = 0;
+        // A stop() that came before the search started still counts
+        aborted = stopped;
+        deadline = (timeLimit > 0) ?
+                System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+        bestMove = -1;
+        bestScore = 0;
+        depthReached = 0;
+
+        stack[0].copyFrom(root);
+        if (network != null) {
+            network.changed(0);
+        }
+        int count = Rules.generateMoves(stack[0], moves, 0);
+        if (Metrics.ENABLED) {
+            movesGenerated += count;
+        }
+        if (count == 0) {
+            bestScore = -WIN;
+            return -1;
+        }
+        rootResult = (pieces(stack[0]) <= tablebasePieces) ?
+                tablebase.probe(stack[0]) : Tablebase.UNKNOWN;
+        if (rootResult != Tablebase.UNKNOWN) {
+            count = keepRootResult(count);
+        }
+        bestMove = moves[0];
+        if (count == 1) {
+            bestScore = rootScore(0);
+            return bestMove; // Nothing to think about
+        }
+
+        for (int depth = firstDepth; depth <= maxDepth; depth++) {
+            int score = searchRoot(depth, count);
+            if (aborted) {
+                break;
+            }
+            bestScore = rootScore(score);
+            depthReached = depth;
+            if (progress != null) {
+                progress.iterationDone(depth, bestMove, bestScore);
+            }
+            // No point looking deeper once a forced win or loss is found
+            if (Math.abs(score) >= WIN - MAX_PLY) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. May be called from
+     * any thread. A search started after it also returns at once, with the
+     * first legal move, until reset() is called.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Undoes stop(), so the next search runs. Called by whoever sets the
+     * search up, before deciding to start it, so a stop() from another
+     * thread in between is not lost.
+     */
+    public void reset() {
+        stopped = false;
+    }
+
+    /**
+     * @return the score of the move returned by the last search, from the
+     * point of view of the player to move
+     */
+    public int bestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return the deepest iteration the last search finished
+     */
+    public int depthReached() {
+        return depthReached;
+    }
+
+    /**
+     * @return the number of positions the last search visited
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Searches every root move to the given depth, starting with the best
+     * move of the previous iteration.
+     * @return the score of the best move, which becomes bestMove
+     */
+    /**
+     * Moves the root moves that keep the tablebase's result for the root to
+     * the front: to a position lost for the opponent from a won one, and to
+     * one not won for the opponent from a drawn one. A move part way
+     * through a multiple jump is kept, since its result is not stored.
+     * @return how many there are, or count if none do
+     */
+    private int keepRootResult(int count) {
+        if (rootResult == Tablebase.LOSS) {
+            return count; // every move loses
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            GameState child = stack[1];
+            child.copyFrom(stack[0]);
+            Rules.play(child, moves[i]);
+            int result = tablebase.probe(child);
+            if (result == Tablebase.LOSS || result == Tablebase.UNKNOWN
+                    || (rootResult == Tablebase.DRAW
+                        && result == Tablebase.DRAW)) {
+                int move = moves[i];
+                moves[i] = moves[kept];
+                moves[kept++] = move;
+            }
+        }
+        if (network != null) {
+            network.changed(1);
+        }
+        return (kept > 0) ? kept : count;
+    }
+
+    /**
+     * @return a score from the search of a root the tablebase covers, made
+     * to show the tablebase's result. Wins and losses found by the search
+     * itself are kept, being more exact.
+     */
+    private int rootScore(int score) {
+        if (rootResult == Tablebase.UNKNOWN || Math.abs(score) >= LEAST_WIN) {
+            return score;
+        }
+        switch (rootResult) {
+            case Tablebase.WIN:
+                return TABLEBASE_WIN + score;
+            case Tablebase.LOSS:
+                return -TABLEBASE_WIN + score;
+            default:
+                return 0;
+        }
+    }
+
+    private static int pieces(GameState state) {
+        return Integer.bitCount(~state.board().empty());
+    }
+
+    private int searchRoot(int depth, int count) {
+        // Put the previous best move first
+        for (int i = 1; i < count; i++) {
+            if (moves[i] == bestMove) {
+                moves[i] = moves[0];
+                moves[0] = bestMove;
+                break;
+            }
+        }
+
+        int alpha = -INFINITY;
+        int iterationBest = moves[0];
+        for (int i = 0; i < count; i++) {
+            int score = searchMove(0, moves[i], depth, alpha, INFINITY);
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                iterationBest = moves[i];
+            }
+        }
+        bestMove = iterationBest;
+        return alpha;
+    }
+
+    /**
+     * Plays move in the position at ply and searches the result.
+     * @return the score of the move for the player making it
+     */
+    private int searchMove(int ply, int move, int depth, int alpha, int beta) {
+        GameState child = stack[ply + 1];
+        child.copyFrom(stack[ply]);
+        if (network != null) {
+            network.changed(ply + 1);
+        }
+        if ((Rules.play(child, move) & Rules.TURN_OVER) != 0) {
+            return -negamax(ply + 1, depth - 1, -beta, -alpha);
+        }
+        // Still our turn: the piece has to jump again
+        return negamax(ply + 1, depth, alpha, beta);
+    }
+
+    private int negamax(int ply, int depth, int alpha, int beta) {
+        if ((++nodes & 1023) == 0) {
+            checkTime();
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (ply > 0 && pieces(stack[ply]) <= tablebasePieces) {
+            int result = tablebase.probe(stack[ply]);
+            // Inside a tablebase endgame only a draw ends the search; a win
+            // has to be played out
+            if (result == Tablebase.DRAW || (result != Tablebase.UNKNOWN
+                    && rootResult == Tablebase.UNKNOWN)) {
+                return tablebaseScore(result, ply);
+            }
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(ply, alpha, beta);
+        }
+
+        // Use what an earlier search found out about this position
+        long key = stack[ply].key();
+        long entry = table.probe(key);
+        int tableMove = -1;
+        if (Metrics.ENABLED) {
+            tableProbes++;
+            tableHits += (entry != 0) ? 1 : 0;
+        }
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int start = ply * Rules.MAX_MOVES;
+        int end = Rules.generateMoves(stack[ply], moves, start);
+        if (Metrics.ENABLED) {
+            movesGenerated += end - start;
+        }
+        if (end == start) {
+            return -WIN + ply; // No moves left, so this player has lost
+        }
+
+        // Try the move the table remembers first
+        for (int i = start + 1; i < end; i++) {
+            if (moves[i] == tableMove) {
+                moves[i] = moves[start];
+                moves[start] = tableMove;
+                break;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = moves[start];
+        for (int i = start; i < end; i++) {
+            int score = searchMove(ply, moves[i], depth, alpha, beta);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = moves[i];
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+                : (best >= beta) ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Scores a tablebase result. Wins and losses keep the evaluation, so of
+     * two won positions the one further ahead is preferred, and lose a point
+     * a ply, so the win is not put off forever.
+     */
+    private int tablebaseScore(int result, int ply) {
+        if (result == Tablebase.DRAW) {
+            return 0;
+        }
+        int score = (result == Tablebase.WIN) ? TABLEBASE_WIN - ply
+                : -TABLEBASE_WIN + ply;
+        return score + evaluate(ply);
+    }
+
+    /**
+     * Win and loss scores, from the end of the game or the tablebase, count
+     * plies from the root. The table holds them counted from the stored
+     * position instead, so they stay right when the position is reached at
+     * a different ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= LEAST_WIN) {
+            return score + ply;
+        }
+        if (score <= -LEAST_WIN) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= LEAST_WIN) {
+            return score - ply;
+        }
+        if (score <= -LEAST_WIN) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * @return the static score of the position at ply for the player to move
+     */
+    private int evaluate(int ply) {
+        return (network == null) ? Evaluation.evaluate(stack[ply])
+                                 : network.evaluate(stack, ply);
+    }
+
+    /**
+     * Searches only jumps. A player without a jump may "stand pat" on the
+     * static evaluation; a player with one has to take it.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        GameState state = stack[ply];
+        if (ply >= MAX_PLY) {
+            return evaluate(ply);
+        }
+        if (Rules.jumpers(state) == 0) {
+            if (state.board().movers(state.sideToMove()) == 0) {
+                return -WIN + ply;
+            }
+            return evaluate(ply);
+        }
+
+        int start = ply * Rules.MAX_MOVES;
+        int end = Rules.generateMoves(state, moves, start);
+        if (Metrics.ENABLED) {
+            movesGenerated += end - start;
+        }
+        int best = -INFINITY;
+        for (int i = start; i < end; i++) {
+            if ((++nodes & 1023) == 0) {
+                checkTime();
+            }
+            if (aborted) {
+                return 0;
+            }
+            GameState child = stack[ply + 1];
+            child.copyFrom(state);
+            if (network != null) {
+                network.changed(ply + 1);
+            }
+            int score = ((Rules.play(child, moves[i]) & Rules.TURN_OVER) != 0)
+                    ? -quiesce(ply + 1, -beta, -alpha)
+                    : quiesce(ply + 1, alpha, beta);
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void checkTime() {
+        if (stopped || System.nanoTime() > deadline) {
+            aborted = true;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package checkers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how ParallelSearch scales with the number of threads. Each thread
+ * count searches the same set of positions to a fixed depth, with the table
+ * cleared before each one. What matters is the time to reach that depth;
+ * the nodes are printed apart from it, since extra threads search more
+ * nodes, many of them repeats, so nodes per second overstates the gain.
+ *
+ * Every thread count is first warmed up at the measured depth, so each is
+ * timed with its code compiled and its threads started. The counts are then
+ * run in rounds, in ascending order one round and descending the next, so
+ * none of them is always measured first or last, while the machine is
+ * still settling or after it has warmed up; each figure printed is the
+ * median of the rounds.
+ *
+ * Usage: java checkers.SearchBenchmark [depth] [max threads] [positions]
+ *        [rounds]
+ */
+public final class SearchBenchmark {
+
+    private static final int TABLE_BITS = 22;
+
+    private SearchBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 14;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        int count = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+        int rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+        List<GameState> positions = positions(count);
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; ; threads *= 2) {
+            threads = Math.min(threads, maxThreads);
+            threadCounts.add(threads);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+        int runs = threadCounts.size();
+        ParallelSearch[] searches = new ParallelSearch[runs];
+        TranspositionTable[] tables = new TranspositionTable[runs];
+        for (int i = 0; i < runs; i++) {
+            tables[i] = new TranspositionTable(TABLE_BITS,
+                    TranspositionTable.Replacement.DEEPER_OR_OLDER);
+            searches[i] = new ParallelSearch(threadCounts.get(i), tables[i]);
+            run(searches[i], tables[i], positions, depth);
+        }
+
+        double[][] millis = new double[runs][rounds];
+        long[][] nodes = new long[runs][rounds];
+        for (int round = 0; round < rounds; round++) {
+            for (int j = 0; j < runs; j++) {
+                int i = (round % 2 == 0) ? j : runs - 1 - j;
+                long start = System.nanoTime();
+                nodes[i][round] = run(searches[i], tables[i], positions,
+                        depth);
+                millis[i][round] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        for (ParallelSearch search : searches) {
+            search.shutdown();
+        }
+
+        System.out.printf("Depth %d, %d positions, median of %d rounds%n",
+                depth, positions.size(), rounds);
+        System.out.printf("%8s %14s %8s %14s %8s %12s%n", "threads",
+                "to depth (ms)", "speedup", "nodes", "nodes x", "nodes/s");
+        double baseMillis = median(millis[0]);
+        double baseNodes = median(nodes[0]);
+        for (int i = 0; i < runs; i++) {
+            double time = median(millis[i]);
+            double searched = median(nodes[i]);
+            System.out.printf("%8d %14.0f %8.2f %14.0f %8.2f %12.0f%n",
+                    threadCounts.get(i), time, baseMillis / time, searched,
+                    searched / baseNodes, searched / time * 1000);
+        }
+    }
+
+    /**
+     * Searches every position to depth with an empty table.
+     * @return the nodes searched by all threads
+     */
+    private static long run(ParallelSearch search, TranspositionTable table,
+                            List<GameState> positions, int depth) {
+        long nodes = 0;
+        for (GameState position : positions) {
+            table.clear();
+            search.search(position, depth, 0);
+            nodes += search.nodes();
+        }
+        return nodes;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return (sorted.length % 2 == 1) ? sorted[middle] :
+                (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static double median(long[] values) {
+        double[] asDoubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            asDoubles[i] = values[i];
+        }
+        return median(asDoubles);
+    }
+
+    /**
+     * @return the starting position followed by positions reached by playing
+     * random moves from it. The seed is fixed so every run uses the same ones.
+     */
+    static List<GameState> positions(int count) {
+        List<GameState> positions = new ArrayList<>();
+        Random random = new Random(2015);
+        int[] moves = new int[Rules.MAX_MOVES];
+        positions.add(new GameState());
+        while (positions.size() < count) {
+            GameState state = new GameState();
+            int plies = 6 + random.nextInt(20);
+            for (int i = 0; i < plies && !Rules.isGameOver(state); i++) {
+                int moveCount = Rules.generateMoves(state, moves, 0);
+                Rules.play(state, moves[random.nextInt(moveCount)]);
+            }
+            if (!Rules.isGameOver(state)) {
+                positions.add(state);
+            }
+        }
+        return positions;
+    }
+}
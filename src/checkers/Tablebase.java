@@ -0,0 +1,278 @@
+package checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Looks up endgame positions in a win/loss/draw database written by
+ * TablebaseGenerator. The file is memory-mapped rather than read, so opening
+ * it is instant and the operating system keeps the parts in use cached.
+ *
+ * Results are stored two bits a position, in blocks that are compressed
+ * separately. A probe finds the block its position is in, inflates it, and
+ * keeps it in a small cache of blocks, since a search probes many positions
+ * near each other. The cache is split into sets of a few blocks, and a block
+ * can only be kept in one set, where it replaces the least recently used.
+ * That is nearly as good as dropping the least recently used block of the
+ * whole cache, but needs no list kept in order and so no lock: after the
+ * first probe of a block, a probe costs a look at a few slots and an index
+ * calculation.
+ *
+ * File layout, all numbers big-endian:
+ *
+ *   int    magic "CKTB"
+ *   int    version
+ *   int    most pieces in any position
+ *   int    positions per block
+ *   int    number of tables, then for each one (a material and a side):
+ *            int material, int side (0 red, 1 black), long positions,
+ *            int first block
+ *   int    number of blocks, then for each one:
+ *            long offset in the file, int compressed length
+ *   ...    the blocks, each deflated
+ *
+ * A Tablebase may be probed by several threads at once. Each has its own
+ * Inflater, and they share the cache.
+ */
+public final class Tablebase implements Closeable {
+
+    /** Probe results, for the player to move */
+    public static final int UNKNOWN = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+
+    /** Where the generator writes a tablebase and the game looks for one */
+    public static final String DEFAULT_FILE = "endgame.cktb";
+
+    // Stored values; INVALID marks indexes that are not positions
+    static final int INVALID = 3;
+
+    static final int MAGIC = 0x434B5442;
+    static final int VERSION = 1;
+
+    // Blocks kept inflated by default: 1024 of 4 KB each
+    private static final int DEFAULT_CACHE_BLOCKS = 1024;
+    // Blocks in each set of the cache
+    private static final int WAYS = 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer file;
+    private final int maxPieces;
+    private final int blockPositions;
+
+    // By side and compact material: the table's first block, or -1 if absent
+    private final int[] firstBlock;
+
+    private final long[] blockOffset;
+    private final int[] blockLength;
+
+    // Blocks kept inflated, block b in one of the ways slots of set
+    // b % sets. A slot may be replaced by another thread at any time, but a
+    // Block's number and data never change, so a thread sees either a whole
+    // block or another one, never a torn one.
+    private final Block[] cache;
+    private final int sets;
+    private final int ways;
+    // Counts probes, to tell which block of a set was used last. Updates
+    // lost to a race only make that a little less exact.
+    private int clock;
+    private final ThreadLocal<Inflater> inflaters =
+            ThreadLocal.withInitial(Inflater::new);
+
+    private Tablebase(FileChannel channel, int cacheBlocks) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Tablebase files are limited to 2 GB.");
+        }
+        file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        file.order(ByteOrder.BIG_ENDIAN);
+
+        if (file.getInt() != MAGIC) {
+            throw new IOException("Not a tablebase file.");
+        }
+        int version = file.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported tablebase version " + version);
+        }
+        maxPieces = file.getInt();
+        blockPositions = file.getInt();
+
+        firstBlock = new int[2 * EndgameIndex.MATERIALS];
+        Arrays.fill(firstBlock, -1);
+        int tables = file.getInt();
+        for (int i = 0; i < tables; i++) {
+            int material = file.getInt();
+            int side = file.getInt();
+            file.getLong(); // the size follows from the material
+            firstBlock[side * EndgameIndex.MATERIALS
+                    + EndgameIndex.compact(material)] = file.getInt();
+        }
+
+        int blocks = file.getInt();
+        blockOffset = new long[blocks];
+        blockLength = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffset[i] = file.getLong();
+            blockLength[i] = file.getInt();
+        }
+        ways = Math.min(WAYS, cacheBlocks);
+        sets = cacheBlocks / ways;
+        cache = new Block[sets * ways];
+    }
+
+    /**
+     * Opens a tablebase file with the default cache size.
+     * @exception IOException if the file cannot be read or is not a tablebase
+     */
+    public static Tablebase open(Path path) throws IOException {
+        return open(path, DEFAULT_CACHE_BLOCKS);
+    }
+
+    /**
+     * @param cacheBlocks how many inflated blocks to keep, at least 1
+     * @exception IOException if the file cannot be read or is not a tablebase
+     */
+    public static Tablebase open(Path path, int cacheBlocks) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new Tablebase(channel, Math.max(1, cacheBlocks));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the tablebase at path, or null if there is no file there or it
+     * cannot be read. For callers that can play on without one.
+     */
+    public static Tablebase openIfPresent(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return open(path);
+        } catch (IOException e) {
+            System.err.println("Cannot open tablebase " + path + ": "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the most pieces a position can have and still be found
+     */
+    public int maxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * @param state a position
+     * @return WIN, LOSS or DRAW with best play for the player to move, or
+     * UNKNOWN if the position is not in the tablebase. Positions in the
+     * middle of a multiple jump never are.
+     */
+    public int probe(GameState state) {
+        if (state.jumpingSquare() != -1) {
+            return UNKNOWN;
+        }
+        Board board = state.board();
+        if (Integer.bitCount(~board.empty()) > maxPieces) {
+            return UNKNOWN;
+        }
+        char side = state.sideToMove();
+        if (board.pieces(side) == 0) {
+            return LOSS;
+        }
+        if (board.pieces(Rules.opponent(side)) == 0) {
+            return UNKNOWN; // the game ended before it got here
+        }
+        int material = EndgameIndex.material(board);
+        int first = firstBlock[(side == 'r' ? 0 : EndgameIndex.MATERIALS)
+                + EndgameIndex.compact(material)];
+        if (first < 0) {
+            return UNKNOWN;
+        }
+        long index = EndgameIndex.index(board, material);
+        int value = value(first + (int) (index / blockPositions),
+                (int) (index % blockPositions));
+        return (value == INVALID) ? UNKNOWN : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int value(int block, int position) {
+        int first = (block % sets) * ways;
+        int now = ++clock;
+        Block cached = null;
+        int oldest = first;
+        for (int slot = first; slot < first + ways; slot++) {
+            Block in = cache[slot];
+            if (in == null) {
+                oldest = slot;
+                break;
+            }
+            if (in.number == block) {
+                cached = in;
+                break;
+            }
+            Block previous = cache[oldest];
+            if (previous != null && in.used - previous.used < 0) {
+                oldest = slot;
+            }
+        }
+        if (cached == null) {
+            // Two threads may both inflate a block; either copy will do
+            cached = new Block(block, inflate(block));
+            cache[oldest] = cached;
+        }
+        cached.used = now;
+        byte[] data = cached.data;
+        return (data[position >>> 2] >>> ((position & 3) * 2)) & 3;
+    }
+
+    private byte[] inflate(int block) {
+        byte[] compressed = new byte[blockLength[block]];
+        // An absolute get, which leaves the buffer's position alone
+        file.get((int) blockOffset[block], compressed);
+        byte[] data = new byte[blockPositions / 4];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            inflater.inflate(data);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Tablebase block " + block
+                    + " is corrupt.", e);
+        }
+        return data;
+    }
+
+    /**
+     * An inflated block, which one it is and when it was last used
+     */
+    private static final class Block {
+        final int number;
+        final byte[] data;
+        int used;
+
+        Block(int number, byte[] data) {
+            this.number = number;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package checkers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Works out whether every endgame position with a few pieces is a win, loss
+ * or draw, and writes the results to a file for Tablebase to read.
+ *
+ * Endgames are solved from the fewest pieces up. A capture leads to an
+ * endgame with fewer pieces and a promotion to one with fewer men, so by the
+ * time an endgame is solved, everything its positions can turn into outside
+ * of itself is already known. Within the endgame the results are found by
+ * retrograde analysis: positions without a move are lost, a position with a
+ * move to a lost one is won, and one whose every move leads to a won one is
+ * lost. Passes over the endgame repeat that until nothing changes; results
+ * are used as soon as they are found, so it rarely takes more than a dozen.
+ * Whatever is still undecided is a draw.
+ *
+ * Every position is solved with each player to move. A whole turn, multiple
+ * jump and all, counts as one move, so positions in the middle of a jump are
+ * not stored.
+ *
+ * Usage: java checkers.TablebaseGenerator pieces [file]
+ *
+ * pieces is from 2 to 6. Four pieces take under a minute; six take many
+ * hours and a few gigabytes of memory.
+ */
+public final class TablebaseGenerator {
+
+    /** Most pieces the generator will solve positions with */
+    public static final int MAX_PIECES = 6;
+
+    /** Positions in each compressed block: 4 KB of results */
+    static final int BLOCK_POSITIONS = 16384;
+
+    // Long enough for any turn with six pieces on the board
+    private static final int MAX_HOPS = 16;
+
+    private final int maxPieces;
+
+    // Finished endgames by side and compact material, two bits a position
+    private final byte[][] solved = new byte[2 * EndgameIndex.MATERIALS][];
+
+    // The endgame being solved, by side, one byte a position
+    private int material;
+    private final byte[][] current = new byte[2][];
+
+    private final GameState[] stack = new GameState[MAX_HOPS + 1];
+    private final int[] moves = new int[(MAX_HOPS + 1) * Rules.MAX_MOVES];
+
+    /**
+     * @param maxPieces the most pieces to solve positions with, 2 to 6
+     */
+    public TablebaseGenerator(int maxPieces) {
+        if (maxPieces < 2 || maxPieces > MAX_PIECES) {
+            throw new IllegalArgumentException(
+                    "Tablebases can have 2 to " + MAX_PIECES + " pieces.");
+        }
+        this.maxPieces = maxPieces;
+        for (int ply = 0; ply <= MAX_HOPS; ply++) {
+            stack[ply] = new GameState();
+        }
+    }
+
+    /**
+     * Solves every endgame and writes the tablebase.
+     * @exception IOException if the file cannot be written
+     */
+    public void generate(Path output) throws IOException {
+        generate(output, materials(maxPieces));
+    }
+
+    /**
+     * Solves some endgames and writes a tablebase of only those, for tests
+     * that need a few quickly.
+     * @param materials the endgames, in the order materials() gives, and
+     *                  every endgame they can turn into
+     * @exception IOException if the file cannot be written
+     */
+    void generate(Path output, List<Integer> materials) throws IOException {
+        for (int m : materials) {
+            long start = System.nanoTime();
+            int passes = solve(m);
+            System.out.printf("%-12s %12d positions %4d passes %8.1f s%n",
+                    name(m), EndgameIndex.size(m), passes,
+                    (System.nanoTime() - start) / 1e9);
+        }
+        write(output, materials);
+    }
+
+    /**
+     * @return every material with at least one piece a side and at most
+     * maxPieces in all, in the order they must be solved
+     */
+    static List<Integer> materials(int maxPieces) {
+        List<Integer> materials = new ArrayList<>();
+        for (int pieces = 2; pieces <= maxPieces; pieces++) {
+            // Fewer men first, since promotion turns a man into a king
+            for (int men = 0; men <= pieces; men++) {
+                for (int redMen = 0; redMen <= men; redMen++) {
+                    int blackMen = men - redMen;
+                    int kings = pieces - men;
+                    for (int redKings = 0; redKings <= kings; redKings++) {
+                        int blackKings = kings - redKings;
+                        if (redMen + redKings > 0 && blackMen + blackKings > 0) {
+                            materials.add(EndgameIndex.material(redMen,
+                                    redKings, blackMen, blackKings));
+                        }
+                    }
+                }
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * Solves one endgame and keeps the results for those that depend on it.
+     * @return the number of passes it took
+     */
+    private int solve(int material) {
+        int size = (int) EndgameIndex.size(material);
+        this.material = material;
+        current[0] = new byte[size];
+        current[1] = new byte[size];
+        GameState state = stack[0];
+        Board board = state.board();
+
+        for (int index = 0; index < size; index++) {
+            if (!EndgameIndex.setUp(board, material, index)) {
+                current[0][index] = Tablebase.INVALID;
+                current[1][index] = Tablebase.INVALID;
+            }
+        }
+
+        // Undecided positions hold 0, which is also DRAW, so whatever is
+        // left at the end needs no further marking
+        int passes = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            passes++;
+            for (int side = 0; side < 2; side++) {
+                byte[] values = current[side];
+                for (int index = 0; index < size; index++) {
+                    if (values[index] != Tablebase.DRAW) {
+                        continue;
+                    }
+                    EndgameIndex.setUp(board, material, index);
+                    state.setTurn(side == 0 ? 'r' : 'b', -1);
+                    int result = solveTurn(0);
+                    if (result != Tablebase.DRAW) {
+                        values[index] = (byte) result;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        int compact = EndgameIndex.compact(material);
+        solved[compact] = pack(current[0]);
+        solved[EndgameIndex.MATERIALS + compact] = pack(current[1]);
+        current[0] = null;
+        current[1] = null;
+        return passes;
+    }
+
+    /**
+     * @return WIN or LOSS if what is known so far decides the position at ply
+     * for the player to move, otherwise DRAW
+     */
+    private int solveTurn(int ply) {
+        int start = ply * Rules.MAX_MOVES;
+        int end = Rules.generateMoves(stack[ply], moves, start);
+        boolean allWon = true;
+        for (int i = start; i < end; i++) {
+            GameState child = stack[ply + 1];
+            child.copyFrom(stack[ply]);
+            if ((Rules.play(child, moves[i]) & Rules.TURN_OVER) != 0) {
+                int result = lookup(child);
+                if (result == Tablebase.LOSS) {
+                    return Tablebase.WIN;
+                }
+                allWon &= (result == Tablebase.WIN);
+            } else {
+                // Still our turn, so the result is already ours
+                int result = solveTurn(ply + 1);
+                if (result == Tablebase.WIN) {
+                    return Tablebase.WIN;
+                }
+                allWon &= (result == Tablebase.LOSS);
+            }
+        }
+        // With no moves at all, allWon is still true: a loss
+        return allWon ? Tablebase.LOSS : Tablebase.DRAW;
+    }
+
+    /**
+     * @return what is known so far about a position at the start of a turn
+     */
+    private int lookup(GameState state) {
+        Board board = state.board();
+        char side = state.sideToMove();
+        if (board.pieces(side) == 0) {
+            return Tablebase.LOSS;
+        }
+        int childMaterial = EndgameIndex.material(board);
+        long index = EndgameIndex.index(board, childMaterial);
+        int sideIndex = (side == 'r') ? 0 : 1;
+        if (childMaterial == material) {
+            return current[sideIndex][(int) index];
+        }
+        byte[] values = solved[sideIndex * EndgameIndex.MATERIALS
+                + EndgameIndex.compact(childMaterial)];
+        return (values[(int) (index >>> 2)] >>> (((int) index & 3) * 2)) & 3;
+    }
+
+    /**
+     * @return values packed four to a byte, padded to whole blocks
+     */
+    private static byte[] pack(byte[] values) {
+        int blocks = (values.length + BLOCK_POSITIONS - 1) / BLOCK_POSITIONS;
+        byte[] packed = new byte[blocks * BLOCK_POSITIONS / 4];
+        for (int i = 0; i < values.length; i++) {
+            packed[i >>> 2] |= (byte) (values[i] << ((i & 3) * 2));
+        }
+        return packed;
+    }
+
+    private void write(Path output, List<Integer> materials) throws IOException {
+        // Compress every block first, since the directory gives their offsets
+        List<byte[]> blocks = new ArrayList<>();
+        int[] firstBlocks = new int[2 * materials.size()];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] buffer = new byte[2 * BLOCK_POSITIONS];
+        int table = 0;
+        for (int m : materials) {
+            for (int side = 0; side < 2; side++) {
+                byte[] packed = solved[side * EndgameIndex.MATERIALS
+                        + EndgameIndex.compact(m)];
+                firstBlocks[table++] = blocks.size();
+                for (int offset = 0; offset < packed.length;
+                        offset += BLOCK_POSITIONS / 4) {
+                    deflater.reset();
+                    deflater.setInput(packed, offset, BLOCK_POSITIONS / 4);
+                    deflater.finish();
+                    int length = deflater.deflate(buffer);
+                    byte[] block = new byte[length];
+                    System.arraycopy(buffer, 0, block, 0, length);
+                    blocks.add(block);
+                }
+            }
+        }
+        deflater.end();
+
+        int tables = 2 * materials.size();
+        long offset = 5 * 4 + tables * (4 + 4 + 8 + 4) + 4
+                + blocks.size() * (8 + 4);
+        try (OutputStream stream = Files.newOutputStream(output);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(stream))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(maxPieces);
+            out.writeInt(BLOCK_POSITIONS);
+            out.writeInt(tables);
+            table = 0;
+            for (int m : materials) {
+                for (int side = 0; side < 2; side++) {
+                    out.writeInt(m);
+                    out.writeInt(side);
+                    out.writeLong(EndgameIndex.size(m));
+                    out.writeInt(firstBlocks[table++]);
+                }
+            }
+            out.writeInt(blocks.size());
+            for (byte[] block : blocks) {
+                out.writeLong(offset);
+                out.writeInt(block.length);
+                offset += block.length;
+            }
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+        }
+        System.out.printf("Wrote %s: %d endgames, %d bytes%n", output,
+                materials.size(), offset);
+    }
+
+    /**
+     * @return a material as text, such as "2+1K v 1K" for two red men and a
+     * red king against a black king
+     */
+    private static String name(int material) {
+        return side(EndgameIndex.redMen(material),
+                        EndgameIndex.redKings(material))
+                + " v " + side(EndgameIndex.blackMen(material),
+                        EndgameIndex.blackKings(material));
+    }
+
+    private static String side(int men, int kings) {
+        if (kings == 0) {
+            return Integer.toString(men);
+        }
+        return (men == 0) ? kings + "K" : men + "+" + kings + "K";
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println(
+                    "Usage: java checkers.TablebaseGenerator pieces [file]");
+            System.exit(2);
+        }
+        int pieces = Integer.parseInt(args[0]);
+        Path output = Paths.get((args.length > 1) ? args[1] : Tablebase.DEFAULT_FILE);
+        long start = System.nanoTime();
+        new TablebaseGenerator(pieces).generate(output);
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
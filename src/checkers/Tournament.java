@@ -0,0 +1,641 @@
+package checkers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays engines against each other without a window, to measure whether a
+ * change to the engine makes it stronger. Every pair of engines plays the
+ * same number of games; each opening is played twice with the colors
+ * swapped, so neither engine gets the better side of an opening more often.
+ * Games run at the same time on a pool of threads, each keeping its own
+ * engines. Results are printed as each game ends, and at the end the score
+ * of each pair with its Elo difference and 95% error bars.
+ *
+ * Usage: java checkers.Tournament [options] engine engine...
+ *
+ * An engine is "random" or "search" followed by settings, such as
+ * search:depth=6 or search:time=20,table=18,name=fast:
+ *
+ *   depth=N     search N plies a move (default 64)
+ *   time=MS     search MS milliseconds a move (default 10, 0 for no limit)
+ *   table=BITS  transposition table of 2^BITS entries (default 16)
+ *   threads=N   search each move with N threads sharing the table
+ *               (default 1), on top of the games played at once
+ *   net=FILE    score positions with the network in FILE instead of the
+ *               evaluation, or net=builtin for the network built from it
+ *   name=TEXT   name to report results under
+ *
+ * Options:
+ *
+ *   --games N          games for each pair of engines (default 100)
+ *   --threads N        games played at once (default: number of processors)
+ *   --clock BASE+INC   a game clock in milliseconds instead of a fixed time
+ *                      a move; running out loses the game
+ *   --random-plies N   start from N random turns (default 4)
+ *   --book FILE        take openings from an opening book instead, for up
+ *                      to --random-plies turns
+ *   --tablebase FILE   end games as soon as the tablebase knows the result
+ *   --max-turns N      call a game drawn after N turns (default 150)
+ *   --seed N           seed for the openings, to repeat a tournament
+ *   --pdn FILE         write every game to FILE in PDN as it ends
+ *   --quiet            only print the final results
+ */
+public final class Tournament {
+
+    // Results of a game
+    static final int RED_WINS = 1;
+    static final int DRAW = 0;
+    static final int BLACK_WINS = -1;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java checkers.Tournament [options] engine engine...",
+            "Engines: random, or search:setting=value,... with settings",
+            "  depth=N, time=MS (a move), table=BITS, threads=N, net=FILE,",
+            "  name=TEXT",
+            "Options: --games N, --threads N, --clock BASE+INC (ms),",
+            "  --random-plies N, --book FILE, --tablebase FILE,",
+            "  --max-turns N, --seed N, --pdn FILE, --quiet");
+
+    // A draw may be claimed after 40 turns each with no capture or man moved
+    private static final int QUIET_TURN_LIMIT = 80;
+
+    private final List<EngineSpec> engines;
+    private final int gamesPerPair;
+    private final int threads;
+    private final long clockBase;
+    private final long clockIncrement;
+    private final int randomPlies;
+    private final OpeningBook book;
+    private final Tablebase tablebase;
+    private final int maxTurns;
+    private final long seed;
+    private final boolean quiet;
+    private final PdnWriter pdn;
+
+    // Each pool thread's engines, in the order of engines
+    private final ThreadLocal<Player[]> players;
+
+    private Tournament(List<EngineSpec> engines, int gamesPerPair, int threads,
+            long clockBase, long clockIncrement, int randomPlies,
+            OpeningBook book, Tablebase tablebase, int maxTurns, long seed,
+            boolean quiet, PdnWriter pdn) {
+        this.engines = engines;
+        this.gamesPerPair = gamesPerPair;
+        this.threads = threads;
+        this.clockBase = clockBase;
+        this.clockIncrement = clockIncrement;
+        this.randomPlies = randomPlies;
+        this.book = book;
+        this.tablebase = tablebase;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+        this.quiet = quiet;
+        this.pdn = pdn;
+        players = ThreadLocal.withInitial(() -> {
+            Player[] created = new Player[engines.size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = engines.get(i).create();
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Plays every game and prints the results.
+     */
+    private void run() throws InterruptedException, IOException {
+        List<Game> games = new ArrayList<>();
+        Random random = new Random(seed);
+        for (int a = 0; a < engines.size(); a++) {
+            for (int b = a + 1; b < engines.size(); b++) {
+                for (int i = 0; i < gamesPerPair; i += 2) {
+                    GameState opening = opening(random);
+                    games.add(new Game(games.size() + 1, opening, a, b));
+                    if (i + 1 < gamesPerPair) {
+                        games.add(new Game(games.size() + 1, opening, b, a));
+                    }
+                }
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Game> finished = new ExecutorCompletionService<>(pool);
+        for (Game game : games) {
+            finished.submit(() -> play(game));
+        }
+
+        // Games each engine won against, and drew with, each other one
+        int[][] wins = new int[engines.size()][engines.size()];
+        int[][] draws = new int[engines.size()][engines.size()];
+        long start = System.nanoTime();
+        try {
+            for (int done = 1; done <= games.size(); done++) {
+                Game game;
+                try {
+                    game = finished.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A game failed.",
+                            e.getCause());
+                }
+                if (game.result == DRAW) {
+                    draws[game.red][game.black]++;
+                    draws[game.black][game.red]++;
+                } else {
+                    boolean redWon = game.result == RED_WINS;
+                    wins[redWon ? game.red : game.black]
+                            [redWon ? game.black : game.red]++;
+                }
+                if (!quiet) {
+                    System.out.printf(
+                            "%5d/%d  game %5d  %s - %s  %s  %d turns, %s%n",
+                            done, games.size(), game.number,
+                            engines.get(game.red).name,
+                            engines.get(game.black).name,
+                            resultText(game.result), game.turns, game.reason);
+                }
+                if (pdn != null) {
+                    pdn.write(record(game));
+                    pdn.flush();
+                    game.moves = null;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%n%d games in %.1f s, %.0f games a minute%n",
+                games.size(), seconds, games.size() / seconds * 60);
+        for (int a = 0; a < engines.size(); a++) {
+            for (int b = a + 1; b < engines.size(); b++) {
+                System.out.println(summary(engines.get(a).name,
+                        engines.get(b).name, wins[a][b], draws[a][b],
+                        wins[b][a]));
+            }
+        }
+    }
+
+    /**
+     * @return a position after a few random (or book) turns from the start
+     */
+    private GameState opening(Random random) {
+        int[] moves = new int[Rules.MAX_MOVES];
+        for (;;) {
+            GameState state = new GameState();
+            int turns = 0;
+            while (turns < randomPlies && !Rules.isGameOver(state)) {
+                char side = state.sideToMove();
+                int move = (book != null) ? book.choose(state, random) : -1;
+                if (move == -1) {
+                    if (book != null) {
+                        break; // out of book
+                    }
+                    int count = Rules.generateMoves(state, moves, 0);
+                    move = moves[random.nextInt(count)];
+                }
+                Rules.play(state, move);
+                if (state.sideToMove() != side) {
+                    turns++;
+                }
+            }
+            // Finish a multiple jump the book left unfinished
+            while (state.jumpingSquare() != -1) {
+                int count = Rules.generateMoves(state, moves, 0);
+                Rules.play(state, moves[random.nextInt(count)]);
+            }
+            if (!Rules.isGameOver(state)) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Plays a game on the calling thread with its own engines.
+     * @return the game, with its result filled in
+     */
+    private Game play(Game game) {
+        Player[] mine = players.get();
+        Player red = mine[game.red];
+        Player black = mine[game.black];
+        red.newGame();
+        black.newGame();
+
+        GameState state = new GameState();
+        state.copyFrom(game.opening);
+        if (pdn != null) {
+            game.moves = new ArrayList<>();
+        }
+        int[] hops = new int[12];
+        int hopCount = 0;
+        long redClock = clockBase;
+        long blackClock = clockBase;
+        int quietTurns = 0;
+        boolean progress = false;
+
+        for (;;) {
+            char side = state.sideToMove();
+            if (state.jumpingSquare() == -1) {
+                if (Rules.isGameOver(state)) {
+                    game.finish(side == 'r' ? BLACK_WINS : RED_WINS, "no moves");
+                    return game;
+                }
+                if (game.turns >= maxTurns) {
+                    game.finish(DRAW, "turn limit");
+                    return game;
+                }
+                if (quietTurns >= QUIET_TURN_LIMIT) {
+                    game.finish(DRAW, "no progress");
+                    return game;
+                }
+                if (tablebase != null) {
+                    int known = tablebase.probe(state);
+                    if (known != Tablebase.UNKNOWN) {
+                        int result = (known == Tablebase.DRAW) ? DRAW
+                                : ((known == Tablebase.WIN) == (side == 'r'))
+                                ? RED_WINS : BLACK_WINS;
+                        game.finish(result, "tablebase");
+                        return game;
+                    }
+                }
+            }
+
+            Player player = (side == 'r') ? red : black;
+            long clock = (side == 'r') ? redClock : blackClock;
+            long budget = (clockBase > 0) ? clock / 20 + clockIncrement : 0;
+            long start = System.nanoTime();
+            int move = player.chooseMove(state, budget);
+            if (clockBase > 0) {
+                clock -= (System.nanoTime() - start) / 1000000;
+                if (clock < 0) {
+                    game.finish(side == 'r' ? BLACK_WINS : RED_WINS, "time");
+                    return game;
+                }
+            }
+
+            Board board = state.board();
+            progress |= !board.isKing(Rules.from(move));
+            int flags = Rules.play(state, move);
+            progress |= (flags & Rules.CAPTURE) != 0;
+            hops[hopCount++] = move;
+            if ((flags & Rules.TURN_OVER) != 0) {
+                if (game.moves != null) {
+                    game.moves.add(Fen.turnText(hops, hopCount));
+                }
+                hopCount = 0;
+                game.turns++;
+                quietTurns = progress ? 0 : quietTurns + 1;
+                progress = false;
+                if (clockBase > 0) {
+                    clock += clockIncrement;
+                }
+            }
+            if (side == 'r') {
+                redClock = clock;
+            } else {
+                blackClock = clock;
+            }
+        }
+    }
+
+    /**
+     * @return the score of a pair with the Elo difference it suggests, for
+     * example "a - b: +60 =25 -15, 72.5%, Elo +168 +/- 62"
+     */
+    static String summary(String a, String b, int wins, int draws,
+            int losses) {
+        int games = wins + draws + losses;
+        String line = String.format("%s - %s: +%d =%d -%d", a, b, wins, draws,
+                losses);
+        if (games == 0) {
+            return line;
+        }
+        double score = (wins + draws / 2.0) / games;
+        if (wins == games || losses == games) {
+            // No finite rating difference explains a clean sweep
+            return line + String.format(", %.1f%%, Elo %sinf", score * 100,
+                    (wins == games) ? "+" : "-");
+        }
+        // Standard error of the mean score, from the spread of the results
+        double variance = (wins * Math.pow(1 - score, 2)
+                + draws * Math.pow(0.5 - score, 2)
+                + losses * Math.pow(score, 2)) / games;
+        double error = 1.96 * Math.sqrt(variance / games);
+        double elo = elo(score);
+        double margin = (elo(Math.min(score + error, 1))
+                - elo(Math.max(score - error, 0))) / 2;
+        return line + String.format(", %.1f%%, Elo %+.0f +/- %.0f",
+                score * 100, elo, margin);
+    }
+
+    /**
+     * @return the Elo difference that gives an expected score
+     */
+    static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * @return a game as a PDN record, starting from its opening position
+     */
+    private PdnGame record(Game game) {
+        PdnGame record = new PdnGame();
+        record.setTag("Event", "Tournament");
+        record.setTag("Round", Integer.toString(game.number));
+        // PDN's Black moves first, which is Red here
+        record.setTag("Black", engines.get(game.red).name);
+        record.setTag("White", engines.get(game.black).name);
+        record.setTag("Result", resultText(game.result));
+        record.setTag("FEN", Fen.format(game.opening));
+        for (String move : game.moves) {
+            record.addMove(move);
+        }
+        record.setResult(resultText(game.result));
+        return record;
+    }
+
+    private static String resultText(int result) {
+        return (result == RED_WINS) ? PdnGame.RED_WINS
+                : (result == BLACK_WINS) ? PdnGame.BLACK_WINS : PdnGame.DRAW;
+    }
+
+    /**
+     * One game of the tournament. Its result is filled in by the thread that
+     * plays it and read after the completion service hands it over.
+     */
+    private static final class Game {
+        final int number;
+        final GameState opening;
+        final int red;
+        final int black;
+        int result;
+        int turns;
+        String reason;
+        List<String> moves; // the turns played, if they are being recorded
+
+        Game(int number, GameState opening, int red, int black) {
+            this.number = number;
+            this.opening = opening;
+            this.red = red;
+            this.black = black;
+        }
+
+        void finish(int result, String reason) {
+            this.result = result;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Something that chooses moves. Each thread has its own.
+     */
+    interface Player {
+        /** Forgets anything learned in the previous game */
+        void newGame();
+
+        /**
+         * @param timeLimit milliseconds the clock allows, or 0 for no clock
+         * @return the packed move to play; there is always at least one
+         */
+        int chooseMove(GameState state, long timeLimit);
+    }
+
+    /**
+     * The settings of one engine, read from the command line
+     */
+    static final class EngineSpec {
+        final String name;
+        final boolean random;
+        final int depth;
+        final long moveTime;
+        final int tableBits;
+        final int threads;
+        final Network network; // null for the evaluation
+
+        private EngineSpec(String name, boolean random, int depth,
+                long moveTime, int tableBits, int threads, Network network) {
+            this.name = name;
+            this.random = random;
+            this.depth = depth;
+            this.moveTime = moveTime;
+            this.tableBits = tableBits;
+            this.threads = threads;
+            this.network = network;
+        }
+
+        /**
+         * @exception IllegalArgumentException if text is not an engine
+         */
+        static EngineSpec parse(String text) {
+            int colon = text.indexOf(':');
+            String kind = (colon < 0) ? text : text.substring(0, colon);
+            if (!kind.equals("search") && !kind.equals("random")) {
+                throw new IllegalArgumentException("Unknown engine '" + kind
+                        + "'; use search or random");
+            }
+            String name = text;
+            int depth = 64;
+            long moveTime = 10;
+            int tableBits = 16;
+            int threads = 1;
+            Network network = null;
+            if (colon >= 0) {
+                for (String setting : text.substring(colon + 1).split(",")) {
+                    int equals = setting.indexOf('=');
+                    if (equals < 0) {
+                        throw new IllegalArgumentException(
+                                "Engine settings look like depth=6: " + text);
+                    }
+                    String key = setting.substring(0, equals).trim();
+                    String value = setting.substring(equals + 1).trim();
+                    switch (key) {
+                        case "depth":
+                            depth = Integer.parseInt(value);
+                            break;
+                        case "time":
+                            moveTime = Long.parseLong(value);
+                            break;
+                        case "table":
+                            tableBits = Integer.parseInt(value);
+                            break;
+                        case "threads":
+                            threads = Integer.parseInt(value);
+                            if (threads < 1) {
+                                throw new IllegalArgumentException(
+                                        "threads must be 1 or more");
+                            }
+                            break;
+                        case "net":
+                            network = readNetwork(value);
+                            break;
+                        case "name":
+                            name = value;
+                            break;
+                        default:
+                            throw new IllegalArgumentException(
+                                    "Unknown engine setting '" + key + "'");
+                    }
+                }
+            }
+            return new EngineSpec(name, kind.equals("random"), depth, moveTime,
+                    tableBits, threads, network);
+        }
+
+        /**
+         * @exception IllegalArgumentException if the network cannot be read
+         */
+        private static Network readNetwork(String value) {
+            if (value.equals("builtin")) {
+                return Network.fromEvaluation();
+            }
+            try {
+                return Network.read(Paths.get(value));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read network "
+                        + value + ": " + e.getMessage());
+            }
+        }
+
+        Player create() {
+            if (random) {
+                return new RandomPlayer();
+            }
+            return new SearchPlayer(this);
+        }
+    }
+
+    private static final class SearchPlayer implements Player {
+        private final TranspositionTable table;
+        private final ParallelSearch search;
+        private final int depth;
+        private final long moveTime;
+
+        SearchPlayer(EngineSpec spec) {
+            table = new TranspositionTable(spec.tableBits,
+                    TranspositionTable.Replacement.DEEPER_OR_OLDER);
+            // With one thread this is just a Search
+            search = new ParallelSearch(spec.threads, table);
+            search.setNetwork(spec.network);
+            depth = spec.depth;
+            moveTime = spec.moveTime;
+        }
+
+        @Override
+        public void newGame() {
+            table.clear();
+        }
+
+        @Override
+        public int chooseMove(GameState state, long timeLimit) {
+            long limit = (timeLimit > 0) ? Math.max(1, timeLimit) : moveTime;
+            return search.search(state, depth, limit);
+        }
+    }
+
+    private static final class RandomPlayer implements Player {
+        private final Random random = new Random();
+        private final int[] moves = new int[Rules.MAX_MOVES];
+
+        @Override
+        public void newGame() {
+        }
+
+        @Override
+        public int chooseMove(GameState state, long timeLimit) {
+            int count = Rules.generateMoves(state, moves, 0);
+            return moves[random.nextInt(count)];
+        }
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        List<EngineSpec> engines = new ArrayList<>();
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long clockBase = 0;
+        long clockIncrement = 0;
+        int randomPlies = 4;
+        OpeningBook book = null;
+        Tablebase tablebase = null;
+        int maxTurns = 150;
+        long seed = System.nanoTime();
+        boolean quiet = false;
+        PdnWriter pdn = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--games":
+                        games = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--clock": {
+                        String[] parts = args[++i].split("\\+");
+                        clockBase = Long.parseLong(parts[0]);
+                        clockIncrement = (parts.length > 1) ?
+                                Long.parseLong(parts[1]) : 0;
+                        break;
+                    }
+                    case "--random-plies":
+                        randomPlies = Integer.parseInt(args[++i]);
+                        break;
+                    case "--book":
+                        book = OpeningBook.open(Paths.get(args[++i]));
+                        break;
+                    case "--tablebase":
+                        tablebase = Tablebase.open(Paths.get(args[++i]));
+                        break;
+                    case "--max-turns":
+                        maxTurns = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--pdn":
+                        pdn = PdnWriter.open(Paths.get(args[++i]), false);
+                        break;
+                    case "--quiet":
+                        quiet = true;
+                        break;
+                    default:
+                        engines.add(EngineSpec.parse(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Bad arguments: " + e.getMessage());
+            engines.clear();
+        }
+        if (engines.size() < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Metrics.registerMBean();
+        System.out.printf("%d engines, %d games a pair, %d threads, seed %d%n",
+                engines.size(), games, threads, seed);
+        new Tournament(engines, games, threads, clockBase, clockIncrement,
+                randomPlies, book, tablebase, maxTurns, seed, quiet, pdn).run();
+        if (Metrics.ENABLED) {
+            System.out.println(Metrics.snapshot());
+        }
+        if (pdn != null) {
+            pdn.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package checkers;
+
+/**
+ * A fixed-size hash table of search results, indexed by GameState.key(), so
+ * a position reached again by a different order of moves is not searched a
+ * second time. The table has a power-of-two number of slots held in a
+ * primitive long[]; nothing is allocated after it is created.
+ *
+ * Each slot is two longs: the result packed into one (see store()) and the
+ * key exclusive-ored with that result in the other. A probe only accepts a
+ * slot whose two halves agree with the key, which also throws away slots torn
+ * by two threads writing at once. That lets several searches share a table
+ * without any locking.
+ */
+public final class TranspositionTable {
+
+    /**
+     * When a new result may overwrite the one already in its slot
+     */
+    public enum Replacement {
+        /** Always replace */
+        ALWAYS,
+        /** Replace only with a result searched at least as deep */
+        DEEPER,
+        /** Replace with a deeper result or over one left by an older search */
+        DEEPER_OR_OLDER
+    }
+
+    // Bounds stored with a score. Never 0, so no stored result is 0 either
+    public static final int EXACT = 1;
+    public static final int LOWER = 2; // the score is at least this
+    public static final int UPPER = 3; // the score is at most this
+
+    /* Layout of a packed result: bits 0-15 move + 1 (0 for none), 16-47
+       score, 48-55 depth, 56-57 bound, 58-63 generation
+    */
+    private static final int GENERATION_SHIFT = 58;
+
+    private final long[] slots;
+    private final int mask;
+    private final Replacement replacement;
+    private int generation;
+
+    /**
+     * @param log2Size the table holds 2^log2Size results (16 bytes each)
+     * @param replacement when a result overwrites an existing one
+     */
+    public TranspositionTable(int log2Size, Replacement replacement) {
+        if (log2Size < 1 || log2Size > 28) {
+            throw new IllegalArgumentException(
+                    "Table size must be between 2^1 and 2^28 entries.");
+        }
+        this.slots = new long[2 << log2Size];
+        this.mask = (1 << log2Size) - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Marks the start of a new search, so DEEPER_OR_OLDER can tell the
+     * results of earlier searches apart.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0x3F;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        java.util.Arrays.fill(slots, 0);
+    }
+
+    /**
+     * @param key a position key
+     * @return the packed result stored for key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = 2 * ((int) key & mask);
+        long data = slots[index + 1];
+        if ((slots[index] ^ data) != key) {
+            return 0;
+        }
+        return data;
+    }
+
+    /**
+     * Stores a search result, unless the replacement policy keeps the one
+     * already in its slot.
+     * @param key the position key
+     * @param move the best packed move found, or -1
+     * @param score the score, already adjusted for storing (see Search)
+     * @param depth the depth searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = 2 * ((int) key & mask);
+        long old = slots[index + 1];
+        if (old != 0 && replacement != Replacement.ALWAYS
+                && depth < depth(old)) {
+            boolean older = generation(old) != generation;
+            if (replacement == Replacement.DEEPER || !older) {
+                return;
+            }
+        }
+        long data = ((move + 1) & 0xFFFFL)
+                | ((score & 0xFFFFFFFFL) << 16)
+                | ((long) (depth & 0xFF) << 48)
+                | ((long) bound << 56)
+                | ((long) generation << GENERATION_SHIFT);
+        slots[index] = key ^ data;
+        slots[index + 1] = data;
+    }
+
+    /**
+     * @param data a packed result from probe()
+     * @return the best move stored, or -1
+     */
+    public static int move(long data) {
+        return (int) (data & 0xFFFF) - 1;
+    }
+
+    public static int score(long data) {
+        return (int) (data >>> 16);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 48) & 0xFF;
+    }
+
+    /**
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int) (data >>> 56) & 0x3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT);
+    }
+}
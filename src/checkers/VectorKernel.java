@@ -0,0 +1,75 @@
+package checkers;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NetworkKernel with the Vector API, as many hidden units at a time as the
+ * CPU's widest vectors hold. Only loaded, by NetworkKernel.get(), when the
+ * jdk.incubator.vector module is present.
+ */
+final class VectorKernel extends NetworkKernel {
+
+    private static final VectorSpecies<Integer> SPECIES =
+            IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    VectorKernel() {
+        if (Network.HIDDEN % LANES != 0) {
+            throw new IllegalStateException(Network.HIDDEN
+                    + " hidden units do not fill " + LANES + "-lane vectors");
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector (" + LANES + " lanes)";
+    }
+
+    @Override
+    void refresh(int[] accumulator, Network network, int[] features,
+                 int count) {
+        int[] weights = network.inputWeights;
+        for (int unit = 0; unit < Network.HIDDEN; unit += LANES) {
+            IntVector sum = IntVector.fromArray(SPECIES, network.hiddenBiases,
+                    unit);
+            for (int i = 0; i < count; i++) {
+                sum = sum.add(IntVector.fromArray(SPECIES, weights,
+                        features[i] * Network.HIDDEN + unit));
+            }
+            sum.intoArray(accumulator, unit);
+        }
+    }
+
+    @Override
+    void update(int[] from, int[] to, Network network, int[] removed,
+                int removedCount, int[] added, int addedCount) {
+        int[] weights = network.inputWeights;
+        // Each slice of units is loaded and stored once, whatever changed
+        for (int unit = 0; unit < Network.HIDDEN; unit += LANES) {
+            IntVector sum = IntVector.fromArray(SPECIES, from, unit);
+            for (int i = 0; i < removedCount; i++) {
+                sum = sum.sub(IntVector.fromArray(SPECIES, weights,
+                        removed[i] * Network.HIDDEN + unit));
+            }
+            for (int i = 0; i < addedCount; i++) {
+                sum = sum.add(IntVector.fromArray(SPECIES, weights,
+                        added[i] * Network.HIDDEN + unit));
+            }
+            sum.intoArray(to, unit);
+        }
+    }
+
+    @Override
+    int output(int[] accumulator, Network network) {
+        IntVector sum = IntVector.zero(SPECIES);
+        for (int unit = 0; unit < Network.HIDDEN; unit += LANES) {
+            IntVector activation = IntVector.fromArray(SPECIES, accumulator,
+                    unit).max(0).min(Network.ACTIVATION_MAX);
+            sum = sum.add(activation.mul(IntVector.fromArray(SPECIES,
+                    network.outputWeights, unit)));
+        }
+        return network.outputBias + sum.reduceLanes(VectorOperators.ADD);
+    }
+}
@@ -0,0 +1,63 @@
+package checkers;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random numbers for Zobrist hashing. A position's key is the exclusive or of
+ * one number for each piece on the board (by color, king status and square),
+ * one more if Black is to move and one for the square of a piece that is
+ * partway through a multiple jump. Moving a piece only changes the numbers
+ * for the squares involved, so the key can be kept up to date as the board
+ * changes instead of being worked out from scratch.
+ *
+ * The numbers come from a fixed seed so keys are the same from run to run
+ * and can be written to files.
+ */
+final class Zobrist {
+
+    // Piece types, used as the first index into PIECES
+    static final int RED_MAN = 0;
+    static final int RED_KING = 1;
+    static final int BLACK_MAN = 2;
+    static final int BLACK_KING = 3;
+
+    private static final long[] PIECES = new long[4 * 32];
+    private static final long[] JUMPING = new long[32];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x636865636B657273L);
+        for (int i = 0; i < PIECES.length; i++) {
+            PIECES[i] = random.nextLong();
+        }
+        for (int i = 0; i < JUMPING.length; i++) {
+            JUMPING[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param type RED_MAN, RED_KING, BLACK_MAN or BLACK_KING
+     * @param square a square number
+     * @return the number for that piece on that square
+     */
+    static long piece(int type, int square) {
+        return PIECES[32 * type + square];
+    }
+
+    /**
+     * @param side the player to move
+     * @param jumpingSquare the square of a piece that must keep jumping, or -1
+     * @return the part of the key that describes whose turn it is
+     */
+    static long turn(char side, int jumpingSquare) {
+        long key = (side == 'b') ? BLACK_TO_MOVE : 0;
+        if (jumpingSquare != -1) {
+            key ^= JUMPING[jumpingSquare];
+        }
+        return key;
+    }
+}
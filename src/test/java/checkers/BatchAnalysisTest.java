@@ -0,0 +1,48 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Results come out in the order the positions went in, however long each
+ * takes.
+ */
+class BatchAnalysisTest {
+
+    private static final String START = "B:W21,22,23,24,25,26,27,28,29,30,31,"
+            + "32:B1,2,3,4,5,6,7,8,9,10,11,12";
+
+    @Test
+    void resultsArePrintedInOrder() throws IOException, InterruptedException {
+        // The slow first position holds back the quick ones after it, more
+        // of them than fit in the window
+        StringBuilder input = new StringBuilder(START + " depth=9\n");
+        input.append("# a comment\n\nnot a position\n");
+        for (int i = 1; i <= 12; i++) {
+            input.append(START).append(" depth=").append(i % 3 + 1)
+                    .append('\n');
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+        new BatchAnalysis(64, 0, 2, 1, 12, null, out).run(
+                new BufferedReader(new StringReader(input.toString())));
+
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\\R");
+        assertEquals(14, lines.length);
+        assertEquals("9", lines[0].split("\t")[3], lines[0]);
+        assertTrue(lines[1].startsWith("not a position\terror: "), lines[1]);
+        for (int i = 2; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t");
+            assertEquals(START, fields[0]);
+            assertEquals(Integer.toString((i - 1) % 3 + 1), fields[3], lines[i]);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The server's protocol, over real connections on the loopback address.
+ */
+class GameServerTest {
+
+    private GameServer server;
+    private Thread serving;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new GameServer(0, 2);
+        serving = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, "test-server");
+        serving.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        server.stop();
+        serving.join(5000);
+    }
+
+    @Test
+    void unknownCommandsAreNamedAsSuch() throws IOException {
+        try (Client client = new Client()) {
+            assertEquals("ERR - unknown command FOO", client.ask("FOO"));
+            assertEquals("ERR - unknown command FOO", client.ask("FOO 1"));
+            assertEquals("ERR - MOVE needs a game number", client.ask("MOVE"));
+        }
+    }
+
+    @Test
+    void seatsAndTurns() throws IOException {
+        try (Client red = new Client(); Client black = new Client()) {
+            assertEquals("GAME 1", red.ask("NEW"));
+            assertEquals("SEAT 1 r", red.ask("SIT 1 r"));
+            assertEquals("ERR 1 that seat is taken", black.ask("SIT 1 r"));
+            assertEquals("SEAT 1 b", black.ask("SIT 1 b"));
+            assertEquals("ERR 1 it is not your turn", black.ask("MOVE 1 9-13"));
+            assertEquals("STATE 1 W:W21,22,23,24,25,26,27,28,29,30,31,32"
+                    + ":B1,2,3,4,5,6,7,8,10,11,12,13",
+                    red.ask("MOVE 1 9-13"));
+            assertEquals("MOVED 1 9-13 W:W21,22,23,24,25,26,27,28,29,30,31,"
+                    + "32:B1,2,3,4,5,6,7,8,10,11,12,13", black.read());
+        }
+    }
+
+    @Test
+    void onlyASeatedPlayerEndsAGame() throws IOException {
+        try (Client player = new Client(); Client watcher = new Client();
+                Client other = new Client()) {
+            assertEquals("GAME 1", player.ask("NEW"));
+            assertEquals("SEAT 1 r", player.ask("SIT 1 r"));
+            assertEquals("WATCHING 1", watcher.ask("WATCH 1"));
+            assertEquals("ERR 1 only a seated player may end it",
+                    other.ask("END 1"));
+            assertEquals("ENDED 1", player.ask("END 1"));
+            assertEquals("ENDED 1", watcher.read());
+            assertEquals("ERR 1 no such game", other.ask("SHOW 1"));
+            assertEquals(0, server.games());
+
+            // No one sat down, so anyone may end it
+            assertEquals("GAME 2", other.ask("NEW"));
+            assertEquals("ENDED 2", watcher.ask("END 2"));
+        }
+    }
+
+    private final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client() throws IOException {
+            socket = new Socket("127.0.0.1", server.port());
+            socket.setSoTimeout(5000);
+            in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = new PrintWriter(socket.getOutputStream(), true,
+                    StandardCharsets.US_ASCII);
+        }
+
+        String ask(String command) throws IOException {
+            out.print(command + "\n");
+            out.flush();
+            return read();
+        }
+
+        String read() throws IOException {
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The buckets' precision and the percentiles read from them.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void shortLatenciesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(1000, histogram.percentileNanos(0));
+        assertEquals(50_000, histogram.percentileNanos(50));
+        assertEquals(99_000, histogram.percentileNanos(99));
+        assertEquals(100_000, histogram.percentileNanos(100));
+        assertEquals(50_500, histogram.meanNanos(), 1e-9);
+    }
+
+    @Test
+    void longLatenciesAreRoundedUpWithinTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 s falls in a bucket 8192 us wide, ending at 1_007_615 us
+        histogram.record(1_000_000_000L);
+        histogram.record(2_000_000_000L);
+        long median = histogram.percentileNanos(50);
+        assertEquals(1_007_615_000L, median);
+        assertEquals(2_000_000_000L, histogram.percentileNanos(100),
+                "never more than the maximum");
+
+        // An hour and more all count as an hour
+        histogram.record(5 * 3600_000_000_000L);
+        assertEquals(5 * 3600_000_000_000L, histogram.maxNanos());
+        assertEquals(3, histogram.count());
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileNanos(50));
+    }
+}
@@ -0,0 +1,38 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookups and dropping the least recently used position.
+ */
+class MoveCacheTest {
+
+    @Test
+    void keepsTheMostRecentlyUsedPositions() {
+        GameState start = new GameState();
+        GameState second = Fen.parse("W:W21,22,23,24,25,26,27,28,29,30,31,32"
+                + ":B1,2,3,4,5,6,7,8,10,11,12,13");
+        GameState third = Fen.parse("W:W21,22,23,24,25,26,27,28,29,30,31,32"
+                + ":B1,2,3,4,5,6,7,8,9,10,11,15");
+        MoveCache cache = new MoveCache(2);
+
+        LegalMoves moves = cache.get(start);
+        assertEquals(7, moves.count());
+        assertSame(moves, cache.get(start));
+        cache.get(second);
+        cache.get(start);   // now more recent than second
+        cache.get(third);   // drops second
+        assertSame(moves, cache.get(start));
+        assertEquals(3, cache.misses());
+        assertEquals(3, cache.hits());
+        cache.get(second);
+        assertEquals(4, cache.misses());
+
+        cache.clear();
+        cache.get(start);
+        assertEquals(5, cache.misses());
+    }
+}
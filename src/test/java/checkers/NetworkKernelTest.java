@@ -0,0 +1,128 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * VectorKernel against the scalar NetworkKernel, on a network with random
+ * weights so every hidden unit and both ends of the clamp are exercised.
+ * The two must agree exactly.
+ */
+class NetworkKernelTest {
+
+    private static final int TRIALS = 2000;
+
+    private static Network network;
+
+    @BeforeAll
+    static void randomNetwork(@TempDir Path directory) throws IOException {
+        Random random = new Random(2015);
+        Path path = directory.resolve("random.cknn");
+        try (DataOutputStream out = new DataOutputStream(
+                Files.newOutputStream(path))) {
+            out.writeInt(0x434B4E4E);
+            out.writeInt(1);
+            out.writeInt(Network.HIDDEN);
+            for (int i = 0; i < Network.INPUTS * Network.HIDDEN; i++) {
+                out.writeInt(random.nextInt(201) - 100);
+            }
+            for (int i = 0; i < Network.HIDDEN; i++) {
+                out.writeInt(random.nextInt(201) - 100);
+            }
+            for (int i = 0; i < Network.HIDDEN; i++) {
+                out.writeInt(random.nextInt(129) - 64);
+            }
+            out.writeInt(random.nextInt(1001) - 500);
+        }
+        network = Network.read(path);
+    }
+
+    private static NetworkKernel vectorKernel() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector")
+                .isPresent(), "jdk.incubator.vector is not present");
+        return new VectorKernel();
+    }
+
+    @Test
+    void refreshUpdateAndOutputMatch() {
+        NetworkKernel scalar = new NetworkKernel();
+        NetworkKernel vector = vectorKernel();
+        Random random = new Random(1964);
+        int[] features = new int[24];
+        int[] removed = new int[4];
+        int[] added = new int[4];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int count = random.nextInt(features.length + 1);
+            for (int i = 0; i < count; i++) {
+                features[i] = random.nextInt(Network.INPUTS);
+            }
+            int[] scalarFrom = new int[Network.HIDDEN];
+            int[] vectorFrom = new int[Network.HIDDEN];
+            scalar.refresh(scalarFrom, network, features, count);
+            vector.refresh(vectorFrom, network, features, count);
+            assertArrayEquals(scalarFrom, vectorFrom, "refresh");
+            assertEquals(scalar.output(scalarFrom, network),
+                    vector.output(vectorFrom, network), "output");
+
+            int removedCount = random.nextInt(removed.length + 1);
+            int addedCount = random.nextInt(added.length + 1);
+            for (int i = 0; i < removedCount; i++) {
+                removed[i] = random.nextInt(Network.INPUTS);
+            }
+            for (int i = 0; i < addedCount; i++) {
+                added[i] = random.nextInt(Network.INPUTS);
+            }
+            int[] scalarTo = new int[Network.HIDDEN];
+            int[] vectorTo = new int[Network.HIDDEN];
+            scalar.update(scalarFrom, scalarTo, network, removed,
+                    removedCount, added, addedCount);
+            vector.update(vectorFrom, vectorTo, network, removed,
+                    removedCount, added, addedCount);
+            assertArrayEquals(scalarTo, vectorTo, "update");
+            assertEquals(scalar.output(scalarTo, network),
+                    vector.output(vectorTo, network), "output after update");
+        }
+    }
+
+    @Test
+    void evaluatorsMatchAlongGames() {
+        NeuralEvaluator scalar = new NeuralEvaluator(network,
+                new NetworkKernel(), 2);
+        NeuralEvaluator vector = new NeuralEvaluator(network, vectorKernel(),
+                2);
+        NeuralEvaluator fresh = new NeuralEvaluator(network,
+                new NetworkKernel(), 1);
+        int[] moves = new int[Rules.MAX_MOVES];
+        List<GameState> positions = SearchBenchmark.positions(64);
+        for (GameState position : positions) {
+            GameState[] line = {position, new GameState()};
+            scalar.changed(0);
+            vector.changed(0);
+            scalar.evaluate(line, 0);
+            vector.evaluate(line, 0);
+            int count = Rules.generateMoves(position, moves, 0);
+            for (int i = 0; i < count; i++) {
+                line[1].copyFrom(position);
+                Rules.play(line[1], moves[i]);
+                scalar.changed(1);
+                vector.changed(1);
+                int expected = fresh.evaluate(line[1]);
+                assertEquals(expected, scalar.evaluate(line, 1),
+                        "scalar, updated");
+                assertEquals(expected, vector.evaluate(line, 1),
+                        "vector, updated");
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Building a book and finding its moves again.
+ */
+class OpeningBookTest {
+
+    @Test
+    void findsEachPositionsMovesWithTheirCounts(@TempDir Path directory)
+            throws IOException {
+        OpeningBook.Builder builder = new OpeningBook.Builder(2);
+        for (int i = 0; i < 3; i++) {
+            builder.addGame(List.of("1.", "11-15", "23-19", "2.", "8-11"));
+        }
+        builder.addGame(List.of("1.", "9-13", "22-18", "1-0"));
+        builder.addGame(List.of("1.", "11-15", "24-20"));
+        Path file = directory.resolve("book.ckob");
+        // 11-15 and 9-13, then 23-19 and 24-20 after 11-15, and 22-18
+        assertEquals(5, builder.write(file, 1));
+
+        try (OpeningBook book = OpeningBook.open(file)) {
+            assertEquals(5, book.size());
+            int[] moves = new int[Rules.MAX_MOVES];
+            int[] weights = new int[Rules.MAX_MOVES];
+            GameState state = new GameState();
+            assertEquals(2, book.moves(state, moves, weights));
+            for (int i = 0; i < 2; i++) {
+                String move = Fen.moveText(moves[i]);
+                assertEquals(move.equals("11-15") ? 4 : 1, weights[i], move);
+            }
+
+            play(state, "11-15");
+            assertEquals(2, book.moves(state, moves, null));
+            play(state, "23-19");
+            assertEquals(0, book.moves(state, moves, weights),
+                    "past the book's two turns");
+        }
+    }
+
+    private static void play(GameState state, String turn) {
+        int[] hops = new int[12];
+        int count = Fen.parseTurn(state, turn, hops);
+        for (int i = 0; i < count; i++) {
+            Rules.play(state, hops[i]);
+        }
+    }
+}
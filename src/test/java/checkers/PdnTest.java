@@ -0,0 +1,71 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Games written by PdnWriter and read back by PdnReader.
+ */
+class PdnTest {
+
+    @Test
+    void gamesReadBackAsWritten() throws IOException {
+        PdnGame first = new PdnGame();
+        first.setTag("Event", "Club \"open\" match");
+        first.setTag("Red", "A. Player");
+        for (int i = 0; i < 20; i++) {
+            first.addMove((i % 2 == 0) ? "11-15" : "22-18");
+        }
+        first.setResult(PdnGame.DRAW);
+
+        PdnGame second = new PdnGame();
+        second.setTag("FEN", "W:W9,K17,21,22,23:B5,6,13,14,K30");
+        second.addMove("21-17");
+        second.addMove("13x22x31");
+        second.setResult(PdnGame.RED_WINS);
+
+        StringWriter text = new StringWriter();
+        try (PdnWriter writer = new PdnWriter(text)) {
+            writer.write(first);
+            writer.write(second);
+        }
+
+        try (PdnReader reader = new PdnReader(new ByteArrayInputStream(
+                text.toString().getBytes(StandardCharsets.ISO_8859_1)))) {
+            for (PdnGame game : List.of(first, second)) {
+                PdnGame read = reader.next();
+                // The writer adds a Result tag if there is none
+                Map<String, String> tags = new LinkedHashMap<>(game.tags());
+                tags.putIfAbsent("Result", game.result());
+                assertEquals(tags, read.tags());
+                assertEquals(game.moves(), read.moves());
+                assertEquals(game.result(), read.result());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void commentsAndVariationsAreSkipped() throws IOException {
+        String text = "[Event \"Test\"]\n\n"
+                + "1. 11-15 {a comment\nover two lines} 23-19 (1... 24-20"
+                + " 8-11) 2. 8-11! $1 22-17 1/2-1/2\n";
+        try (PdnReader reader = new PdnReader(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.ISO_8859_1)))) {
+            PdnGame game = reader.next();
+            assertEquals(List.of("11-15", "23-19", "8-11", "22-17"),
+                    game.moves());
+            assertEquals(PdnGame.DRAW, game.result());
+            assertNull(reader.next());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The move generator against the published perft counts.
+ */
+class PerftTest {
+
+    // The deepest count checked, a few seconds at most
+    private static final int DEPTH = 9;
+
+    @Test
+    void countsFromTheStartMatchPublishedOnes() {
+        Perft perft = new Perft();
+        for (int depth = 0; depth <= DEPTH; depth++) {
+            assertEquals(Perft.START_COUNTS[depth],
+                    perft.count(new GameState(), depth), "depth " + depth);
+        }
+    }
+
+    @Test
+    void divideAddsUpToTheCount() {
+        Perft perft = new Perft();
+        GameState root = Fen.parse("W:W9,K17,21,22,23:B5,6,13,14,K30");
+        assertEquals(perft.count(root, 5), perft.divide(root, 5));
+    }
+
+    @Test
+    void nothingIsCountedBelowDepthOne() {
+        Perft perft = new Perft();
+        assertEquals(1, perft.count(new GameState(), 0));
+        assertEquals(1, perft.count(new GameState(), -1));
+    }
+}
@@ -0,0 +1,116 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rules.make() and unmake() against play(): every move of many random games
+ * is made and taken back, and the position must come back exactly.
+ */
+class RulesTest {
+
+    private static final int GAMES = 200;
+    private static final int MAX_PLIES = 200;
+
+    @Test
+    void unmakeRestoresEveryMove() {
+        Random random = new Random(2015);
+        int[] moves = new int[Rules.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            GameState state = new GameState();
+            for (int ply = 0; ply < MAX_PLIES && !Rules.isGameOver(state);
+                    ply++) {
+                int count = Rules.generateMoves(state, moves, 0);
+                for (int i = 0; i < count; i++) {
+                    Snapshot before = new Snapshot(state);
+                    GameState played = new GameState();
+                    played.copyFrom(state);
+                    int result = Rules.play(played, moves[i]);
+
+                    int undo = Rules.make(state, moves[i]);
+                    assertEquals(new Snapshot(played), new Snapshot(state),
+                            "make() plays as play() does");
+                    assertEquals(result, Rules.result(undo));
+                    assertEquals(moves[i], Rules.undoneMove(undo));
+                    assertEquals(before.side, Rules.mover(undo));
+
+                    Rules.unmake(state, undo);
+                    assertEquals(before, new Snapshot(state),
+                            "unmake() after " + Fen.moveText(moves[i])
+                            + " in " + Fen.format(state));
+                }
+                Rules.play(state, moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    void unmakeRestoresWholeLinesInReverse() {
+        Random random = new Random(1964);
+        int[] moves = new int[Rules.MAX_MOVES];
+        int[] undos = new int[MAX_PLIES];
+        Snapshot[] line = new Snapshot[MAX_PLIES];
+        for (int game = 0; game < GAMES; game++) {
+            GameState state = new GameState();
+            int plies = 0;
+            while (plies < MAX_PLIES && !Rules.isGameOver(state)) {
+                int count = Rules.generateMoves(state, moves, 0);
+                line[plies] = new Snapshot(state);
+                undos[plies++] = Rules.make(state,
+                        moves[random.nextInt(count)]);
+            }
+            while (plies > 0) {
+                Rules.unmake(state, undos[--plies]);
+                assertEquals(line[plies], new Snapshot(state),
+                        "taking back ply " + plies + " of game " + game);
+            }
+        }
+    }
+
+    /**
+     * Everything about a position that make() and unmake() touch
+     */
+    private static final class Snapshot {
+        final int red;
+        final int black;
+        final int kings;
+        final char side;
+        final int jumpingSquare;
+        final long key;
+
+        Snapshot(GameState state) {
+            Board board = state.board();
+            red = board.pieces('r');
+            black = board.pieces('b');
+            kings = board.kings();
+            side = state.sideToMove();
+            jumpingSquare = state.jumpingSquare();
+            key = state.key();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot that = (Snapshot) other;
+            return red == that.red && black == that.black
+                    && kings == that.kings && side == that.side
+                    && jumpingSquare == that.jumpingSquare && key == that.key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("red %08x black %08x kings %08x, %c to move,"
+                    + " jumping %d, key %016x", red, black, kings, side,
+                    jumpingSquare, key);
+        }
+    }
+}
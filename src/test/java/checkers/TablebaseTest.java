@@ -0,0 +1,144 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The search with a tablebase of the endgames with only kings, up to four
+ * pieces, which takes a few seconds to generate.
+ */
+class TablebaseTest {
+
+    private static final int PIECES = 4;
+    private static final int SAMPLES = 2000;
+
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    static void generate(@TempDir Path directory) throws IOException {
+        List<Integer> kingsOnly = new ArrayList<>();
+        for (int material : TablebaseGenerator.materials(PIECES)) {
+            if (EndgameIndex.redMen(material) == 0
+                    && EndgameIndex.blackMen(material) == 0) {
+                kingsOnly.add(material);
+            }
+        }
+        Path file = directory.resolve("kings.cktb");
+        new TablebaseGenerator(PIECES).generate(file, kingsOnly);
+        tablebase = Tablebase.open(file);
+    }
+
+    @AfterAll
+    static void close() throws IOException {
+        tablebase.close();
+    }
+
+    /**
+     * Every result must follow from the results after each move, as the
+     * generator worked them out, and agree with any forced win or loss a
+     * search without the tablebase finds.
+     */
+    @Test
+    void resultsAgreeWithMovesAndSearch() {
+        Random random = new Random(2015);
+        int[] moves = new int[Rules.MAX_MOVES];
+        Search search = new Search(new TranspositionTable(16,
+                TranspositionTable.Replacement.DEEPER_OR_OLDER));
+        int searched = 0;
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            GameState state = randomKings(random);
+            // Whole turns only, which is what the tablebase stores
+            if (Rules.jumpers(state) != 0 || Rules.isGameOver(state)) {
+                continue;
+            }
+            String fen = Fen.format(state);
+            int result = tablebase.probe(state);
+            int count = Rules.generateMoves(state, moves, 0);
+            boolean anyLost = false;
+            boolean allWon = true;
+            for (int i = 0; i < count; i++) {
+                GameState child = new GameState();
+                child.copyFrom(state);
+                Rules.play(child, moves[i]);
+                int childResult = tablebase.probe(child);
+                anyLost |= childResult == Tablebase.LOSS;
+                allWon &= childResult == Tablebase.WIN;
+            }
+            int expected = anyLost ? Tablebase.WIN
+                    : allWon ? Tablebase.LOSS : Tablebase.DRAW;
+            assertEquals(expected, result, fen);
+
+            // No tablebase, so only a game played out scores this high
+            search.search(state, 10, 0);
+            int score = search.bestScore();
+            if (score >= Search.TABLEBASE_WIN) {
+                assertEquals(Tablebase.WIN, result, fen);
+                searched++;
+            } else if (score <= -Search.TABLEBASE_WIN) {
+                assertEquals(Tablebase.LOSS, result, fen);
+                searched++;
+            }
+        }
+        assertTrue(searched > 0, "the search found no forced results");
+    }
+
+    /**
+     * @return two to four kings, at least one a side, with either to move
+     */
+    private static GameState randomKings(Random random) {
+        int pieces = 2 + random.nextInt(PIECES - 1);
+        int red = 0;
+        int black = 0;
+        for (int i = 0; i < pieces; i++) {
+            int square;
+            do {
+                square = random.nextInt(32);
+            } while (((red | black) & (1 << square)) != 0);
+            if (i == 0 || (i > 1 && random.nextBoolean())) {
+                red |= 1 << square;
+            } else {
+                black |= 1 << square;
+            }
+        }
+        GameState state = new GameState();
+        state.board().set(red, black, red | black);
+        state.setTurn(random.nextBoolean() ? 'r' : 'b', -1);
+        return state;
+    }
+
+    @Test
+    void threeKingsBeatOne() {
+        // PDN's Black is Red here, moving first
+        assertWins("B:WK28:BK1,K2,K3", 'r');
+        assertWins("W:WK28:BK1,K2,K3", 'r');
+        assertWins("W:WK5,K9,K32:BK18", 'b');
+    }
+
+    /**
+     * Plays the position out with the tablebase loaded, as the game would
+     */
+    private static void assertWins(String fen, char winner) {
+        GameState game = Fen.parse(fen);
+        assertEquals((game.sideToMove() == winner) ? Tablebase.WIN
+                : Tablebase.LOSS, tablebase.probe(game), fen);
+        Search search = new Search(new TranspositionTable(16,
+                TranspositionTable.Replacement.DEEPER_OR_OLDER));
+        search.setTablebase(tablebase);
+        for (int ply = 0; ply < 100 && !Rules.isGameOver(game); ply++) {
+            Rules.play(game, search.search(game, 12, 0));
+        }
+        assertTrue(Rules.isGameOver(game), fen + " not won in 100 plies, "
+                + "left at " + Fen.format(game));
+        assertEquals(Rules.opponent(winner), game.sideToMove(), fen);
+    }
+}
@@ -0,0 +1,62 @@
+package checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Packing results into the table and the replacement policies.
+ */
+class TranspositionTableTest {
+
+    private static final long KEY = 0x123456789ABCDEF1L;
+    // Lands in the same slot of a 2^4 table as KEY
+    private static final long OTHER_KEY = KEY + (1L << 40);
+
+    @Test
+    void resultsComeBackAsStored() {
+        TranspositionTable table = new TranspositionTable(4,
+                TranspositionTable.Replacement.ALWAYS);
+        int move = Rules.move(8, 12);
+        table.store(KEY, move, -Search.WIN + 7, 200,
+                TranspositionTable.UPPER);
+        long data = table.probe(KEY);
+        assertEquals(move, TranspositionTable.move(data));
+        assertEquals(-Search.WIN + 7, TranspositionTable.score(data));
+        assertEquals(200, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(data));
+
+        table.store(KEY, -1, 0, 0, TranspositionTable.EXACT);
+        assertEquals(-1, TranspositionTable.move(table.probe(KEY)));
+        assertEquals(0, table.probe(OTHER_KEY), "another key in the slot");
+        table.clear();
+        assertEquals(0, table.probe(KEY));
+    }
+
+    @Test
+    void deeperKeepsTheDeeperResult() {
+        TranspositionTable table = new TranspositionTable(4,
+                TranspositionTable.Replacement.DEEPER);
+        table.store(KEY, -1, 10, 6, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(OTHER_KEY, -1, 20, 5, TranspositionTable.EXACT);
+        assertEquals(0, table.probe(OTHER_KEY));
+        assertEquals(10, TranspositionTable.score(table.probe(KEY)));
+        table.store(OTHER_KEY, -1, 20, 6, TranspositionTable.EXACT);
+        assertEquals(20, TranspositionTable.score(table.probe(OTHER_KEY)));
+    }
+
+    @Test
+    void deeperOrOlderReplacesResultsOfEarlierSearches() {
+        TranspositionTable table = new TranspositionTable(4,
+                TranspositionTable.Replacement.DEEPER_OR_OLDER);
+        table.store(KEY, -1, 10, 6, TranspositionTable.EXACT);
+        table.store(OTHER_KEY, -1, 20, 5, TranspositionTable.EXACT);
+        assertEquals(10, TranspositionTable.score(table.probe(KEY)),
+                "a shallower result of the same search");
+        table.newSearch();
+        table.store(OTHER_KEY, -1, 20, 5, TranspositionTable.EXACT);
+        assertEquals(20, TranspositionTable.score(table.probe(OTHER_KEY)),
+                "a shallower result of a later search");
+    }
+}